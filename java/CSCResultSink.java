@@ -0,0 +1,112 @@
+/*
+ * Result sink which appends the itemsets (or the lhs and rhs of rules) 
+ * directly to growable i/p arrays (compressed sparse column format as used
+ * by SparseSetOfItemsets and R's ngCMatrix) and the precision to a double
+ * array. The R_result is built from these arrays.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class CSCResultSink implements ResultSink {
+
+    private int items;
+    private boolean rules;
+
+    // itemsets or lhs of rules
+    private int[] i = new int[1024];
+    private int[] p = new int[256];
+
+    // rhs of rules (one item per rule) 
+    private int[] rhs;
+
+    private double[] precision = new double[256];
+    private int size = 0;
+    private int incidences = 0;
+
+    public CSCResultSink(int items, boolean rules) {
+        this.items = items;
+        this.rules = rules;
+        if (rules) rhs = new int[256];
+    }
+
+    public void addItemset(int[] theItems, int length, double thePrecision) {
+        add(theItems, length, thePrecision);
+    }
+
+    public void addRule(int[] lhs, int length, int aRhs, 
+            double thePrecision) {
+        if (size == rhs.length) rhs = grow(rhs, size * 2);
+        rhs[size] = aRhs;
+        add(lhs, length, thePrecision);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public R_result getResult() {
+        int[] p = new int[size + 1];
+        System.arraycopy(this.p, 0, p, 0, size + 1);
+        int[] i = new int[incidences];
+        System.arraycopy(this.i, 0, i, 0, incidences);
+        double[] precision = new double[size];
+        System.arraycopy(this.precision, 0, precision, 0, size);
+
+        if (!rules) 
+            return new R_result(new SparseSetOfItemsets(i, p, items), 
+                    precision);
+
+        int[] rhsI = new int[size];
+        System.arraycopy(rhs, 0, rhsI, 0, size);
+        int[] rhsP = new int[size + 1];
+        for (int r = 0; r <= size; r++) rhsP[r] = r;
+
+        return new R_result(new SparseSetOfItemsets(i, p, items), 
+                new SparseSetOfItemsets(rhsI, rhsP, items), precision);
+    }
+
+    private void add(int[] theItems, int length, double thePrecision) {
+        if (size + 1 == p.length) p = grow(p, p.length * 2);
+        if (size == precision.length) {
+            double[] newPrecision = new double[size * 2];
+            System.arraycopy(precision, 0, newPrecision, 0, size);
+            precision = newPrecision;
+        }
+        if (incidences + length > i.length) 
+            i = grow(i, Math.max(i.length * 2, incidences + length));
+
+        System.arraycopy(theItems, 0, i, incidences, length);
+        incidences += length;
+
+        precision[size] = thePrecision;
+        size++;
+        p[size] = incidences;
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        CSCResultSink sink = new CSCResultSink(50, false);
+        int[] items = {1, 3, 5, 18, 44};
+        for (int j = 1; j <= 300; j++) 
+            sink.addItemset(items, 1 + j % items.length, 0.5);
+
+        R_result result = sink.getResult();
+        System.out.println(result.getItems() + ": " + 
+                result.getItems().getItemset(3) + " precision " + 
+                result.getPrecision()[3]);
+
+        CSCResultSink ruleSink = new CSCResultSink(50, true);
+        ruleSink.addRule(items, 2, 18, 0.99);
+        ruleSink.addRule(items, 3, 44, 0.98);
+        result = ruleSink.getResult();
+        System.out.println(result.getLhs().getItemset(1) + " => " + 
+                result.getRhs().getItemset(1) + " precision " + 
+                result.getPrecision()[1]);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Compressed list of transaction IDs: the gaps between the (increasing)
+ * tids are stored as varints (7 bits per byte, the high bit marks that
+ * another byte follows). Dense tid-lists take about one byte per tid
+ * instead of four. Every BLOCK tids the byte offset and the preceding tid
+ * are recorded, so contains only decodes one block.
+ *
+ * The tids are read in order by decoding the gaps in place (see
+ * NBMiner.countCompressed):
+ *
+ *   byte[] bytes = list.getBytes();
+ *   int tid = -1;
+ *   for (int pos = 0; pos < list.length(); ) {
+ *       int b, gap = 0, shift = 0;
+ *       do { b = bytes[pos++]; gap |= (b & 0x7f) << shift; shift += 7; }
+ *       while (b < 0);
+ *       tid += gap;
+ *   }
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class CompressedTidList extends Tidset {
+
+    // tids per entry of the block index
+    public static final int BLOCK = 64;
+
+    private byte[] bytes;
+    private int length;     // bytes used
+    private int size;       // number of tids
+    private int last = -1;  // last tid added
+
+    // byte offset and preceding tid of every BLOCK-th tid
+    private int[] blockOffset;
+    private int[] blockBase;
+
+    public CompressedTidList() {
+        this(16);
+    }
+
+    // capacity in bytes
+    public CompressedTidList(int capacity) {
+        if (capacity < 1) capacity = 1;
+        bytes = new byte[capacity];
+        blockOffset = new int[1];
+        blockBase = new int[1];
+    }
+
+    public void add(int tid) {
+        if (size % BLOCK == 0) {
+            int block = size / BLOCK;
+            if (block == blockOffset.length) {
+                blockOffset = grow(blockOffset, block * 2);
+                blockBase = grow(blockBase, block * 2);
+            }
+            blockOffset[block] = length;
+            blockBase[block] = last;
+        }
+
+        // at most 5 bytes per gap
+        if (length + 5 > bytes.length) {
+            byte[] newBytes = new byte[Math.max(bytes.length * 2,
+                        length + 5)];
+            System.arraycopy(bytes, 0, newBytes, 0, length);
+            bytes = newBytes;
+        }
+
+        int gap = tid - last;
+        while ((gap & ~0x7f) != 0) {
+            bytes[length++] = (byte) ((gap & 0x7f) | 0x80);
+            gap >>>= 7;
+        }
+        bytes[length++] = (byte) gap;
+
+        last = tid;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // bytes used by the gaps
+    public int length() {
+        return length;
+    }
+
+    // the encoded gaps (only the first length() bytes are valid)
+    public byte[] getBytes() {
+        return bytes;
+    }
+
+    // keeps the arrays so the list can be reused
+    public void clear() {
+        length = 0;
+        size = 0;
+        last = -1;
+    }
+
+    public boolean contains(int tid) {
+        if (size == 0 || tid > last || tid < 0) return false;
+
+        // last block which starts before tid
+        int low = 0;
+        int high = (size - 1) / BLOCK;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (blockBase[mid] < tid) low = mid;
+            else high = mid - 1;
+        }
+
+        int current = blockBase[low];
+        int end = Math.min(size, (low + 1) * BLOCK);
+        int pos = blockOffset[low];
+        for (int t = low * BLOCK; t < end; t++) {
+            int b;
+            int gap = 0;
+            int shift = 0;
+            do {
+                b = bytes[pos++];
+                gap |= (b & 0x7f) << shift;
+                shift += 7;
+            }while (b < 0);
+
+            current += gap;
+            if (current >= tid) return current == tid;
+        }
+        return false;
+    }
+
+    // the tids decoded into target (which is cleared)
+    public void toTidList(TidList target) {
+        target.clear();
+        int tid = -1;
+        for (int pos = 0; pos < length; ) {
+            int b;
+            int gap = 0;
+            int shift = 0;
+            do {
+                b = bytes[pos++];
+                gap |= (b & 0x7f) << shift;
+                shift += 7;
+            }while (b < 0);
+
+            tid += gap;
+            target.add(tid);
+        }
+    }
+
+    // copy with right-sized arrays
+    public Tidset copy() {
+        CompressedTidList list = new CompressedTidList(length);
+        System.arraycopy(bytes, 0, list.bytes, 0, length);
+        int blocks = (size + BLOCK - 1) / BLOCK;
+        list.blockOffset = new int[Math.max(1, blocks)];
+        list.blockBase = new int[Math.max(1, blocks)];
+        System.arraycopy(blockOffset, 0, list.blockOffset, 0, blocks);
+        System.arraycopy(blockBase, 0, list.blockBase, 0, blocks);
+        list.length = length;
+        list.size = size;
+        list.last = last;
+        return list;
+    }
+
+    // allocated bytes (approximate)
+    public long bytes() {
+        return bytes.length + 8L * blockOffset.length;
+    }
+
+    // bytes per tid of the varint gaps if a tid-list of an item with
+    // frequency in transactions has evenly spread tids
+    public static int bytesPerTid(long frequency, long transactions) {
+        if (frequency <= 0) return 1;
+        long gap = Math.max(1, transactions / frequency);
+        int perTid = 1;
+        while ((gap >>>= 7) != 0) perTid++;
+        return perTid;
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    public String toString() {
+        TidList list = new TidList(size);
+        toTidList(list);
+        return list.toString();
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        CompressedTidList list = new CompressedTidList(2);
+        for (int i = 0; i < 10; i++) list.add(i * 3);
+        list.add(100000);
+
+        System.out.println("list: " + list);
+        System.out.println("size: " + list.size() + ", bytes used: " +
+                list.length());
+        System.out.println("contains(9): " + list.contains(9) +
+                ", contains(10): " + list.contains(10) +
+                ", contains(100000): " + list.contains(100000));
+
+        CompressedTidList large = new CompressedTidList();
+        TidList plain = new TidList();
+        for (int tid = 0; tid < 100000; tid += 1 + tid % 7) {
+            large.add(tid);
+            plain.add(tid);
+        }
+        boolean same = true;
+        for (int tid = 0; tid < 100010; tid++)
+            if (large.contains(tid) != (plain.position(tid) < plain.size()
+                        && plain.get(plain.position(tid)) == tid))
+                same = false;
+        TidList decoded = new TidList();
+        ((CompressedTidList) large.copy()).toTidList(decoded);
+        System.out.println(large.size() + " tids in " + large.length() +
+                " bytes (" + 4 * plain.size() + " as ints), contains " +
+                (same ? "agrees" : "DIFFERS") + ", copy " +
+                (decoded.toString().equals(plain.toString()) ?
+                 "agrees" : "DIFFERS"));
+
+        list.clear();
+        System.out.println("after clear, isEmpty? " + list.isEmpty());
+    }
+}
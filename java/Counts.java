@@ -0,0 +1,177 @@
+/*
+ * Co-occurrence counts of the items for one DFS node. Only items which
+ * occur (touched items) are recorded, so resetting and iterating the 
+ * counts costs O(touched items) instead of O(items). The arrays are reused
+ * for all nodes at the same depth (see ScratchBuffers).
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class Counts {
+
+    // a finished tid-list with more than this many bytes is released
+    // instead of kept for the next node
+    private static final long RELEASE_BYTES = 4096;
+
+    private int[] counter;      // count per item (0 if not touched)
+    private int[] touched;      // touched items in order of first occurrence
+    private int nTouched;
+    private TidList[] tidlists; // tid-list per item (only used for tid-lists)
+    private boolean hasTidlists;
+
+    // compressed tid-lists per item (instead of tidlists)
+    private CompressedTidList[] compressed;
+    private boolean isCompressed;
+
+    // bytes of the released tid-lists of the current node and the largest
+    // tid-lists of a node so far (for tidlistBytes)
+    private long released;
+    private long peak;
+
+    public Counts(int items) {
+        this.counter = new int[items];
+        this.touched = new int[items];
+        this.nTouched = 0;
+    }
+
+    // count item in transaction tid and add tid to the item's tid-list 
+    public void add(int item, int tid) {
+        if (isCompressed) {
+            addCompressed(item, tid);
+            return;
+        }
+
+        if (counter[item]++ == 0) touched[nTouched++] = item;
+        if (tidlists[item] == null) tidlists[item] = new TidList();
+
+        tidlists[item].add(tid);
+    }
+
+    private void addCompressed(int item, int tid) {
+        if (counter[item]++ == 0) touched[nTouched++] = item;
+        if (compressed[item] == null) 
+            compressed[item] = new CompressedTidList();
+
+        compressed[item].add(tid);
+    }
+
+    // set the count for an item (without tid-list)
+    public void set(int item, int count) {
+        if (count == 0) return;
+
+        if (counter[item] == 0) touched[nTouched++] = item;
+        counter[item] = count;
+    }
+
+    // reset the counts. With tid-lists also the tid-lists are kept and 
+    // reset, otherwise they are not available.
+    public void clear(boolean withTidlists) {
+        clear(withTidlists, false);
+    }
+
+    // reset the counts (with compressed tid-lists if withTidlists and
+    // compress)
+    public void clear(boolean withTidlists, boolean compress) {
+        long bytes = released;
+        for (int i = 0; i < nTouched; i++) {
+            int item = touched[i];
+            counter[item] = 0;
+            if (!hasTidlists) continue;
+
+            if (isCompressed) {
+                if (compressed[item] == null) continue;
+                bytes += compressed[item].bytes();
+                compressed[item].clear();
+            }else{
+                if (tidlists[item] == null) continue;
+                bytes += tidlists[item].bytes();
+                tidlists[item].clear();
+            }
+        }
+        nTouched = 0;
+        peak = Math.max(peak, bytes);
+        released = 0;
+
+        hasTidlists = withTidlists;
+        isCompressed = withTidlists && compress;
+        if (isCompressed && compressed == null) 
+            compressed = new CompressedTidList[counter.length];
+        if (hasTidlists && !isCompressed && tidlists == null) 
+            tidlists = new TidList[counter.length];
+    }
+
+    // number of items in the database (touched or not)
+    public int items() {
+        return counter.length;
+    }
+
+    public int get(int item) {
+        return counter[item];
+    }
+
+    public int touched() {
+        return nTouched;
+    }
+
+    public int getTouched(int index) {
+        return touched[index];
+    }
+
+    public boolean hasTidlists() {
+        return hasTidlists;
+    }
+
+    public boolean isCompressed() {
+        return isCompressed;
+    }
+
+    // tid-list of an item or null if the item is not touched (null for
+    // compressed tid-lists)
+    public TidList getTidlist(int item) {
+        if (!hasTidlists || isCompressed || counter[item] == 0) return null;
+        return tidlists[item];
+    }
+
+    // compressed tid-list of an item or null if the item is not touched
+    public CompressedTidList getCompressed(int item) {
+        if (!isCompressed || counter[item] == 0) return null;
+        return compressed[item];
+    }
+
+    // the DFS is done with the tid-list of item: a large list is released
+    // (it is not reused by the next node at this depth)
+    public void release(int item) {
+        if (!hasTidlists || counter[item] == 0) return;
+
+        if (isCompressed) {
+            if (compressed[item] == null || 
+                    compressed[item].bytes() <= RELEASE_BYTES) return;
+            released += compressed[item].bytes();
+            compressed[item] = null;
+        }else{
+            if (tidlists[item] == null || 
+                    tidlists[item].bytes() <= RELEASE_BYTES) return;
+            released += tidlists[item].bytes();
+            tidlists[item] = null;
+        }
+    }
+
+    // release the large tid-lists of all touched items (no tid-lists of 
+    // this node are reused by the next node at this depth)
+    public void releaseAll() {
+        for (int i = 0; i < nTouched; i++) release(touched[i]);
+    }
+
+    // allocated bytes of the tid-lists of the node with the largest 
+    // tid-lists at this depth (the peak, small lists are kept for reuse)
+    public long tidlistBytes() {
+        long bytes = released;
+        for (int item = 0; item < counter.length; item++) {
+            if (tidlists != null && tidlists[item] != null) 
+                bytes += tidlists[item].bytes();
+            if (compressed != null && compressed[item] != null) 
+                bytes += compressed[item].bytes();
+        }
+        return Math.max(peak, bytes);
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Incremental mining of a transaction database which grows by appended
+ * batches of transactions. The result of NBSelect (the selection) of every
+ * itemset visited by the DFS is kept between runs together with per-item
+ * tid-lists. After appending a batch, a run replays the DFS on the stored
+ * selections and only recounts the itemsets which occur in one of the new
+ * transactions (the other selections cannot have changed). The repository
+ * counts are recomputed by the replay, which is cheap, so the result (and
+ * its order) is the same as for mining the whole database from scratch.
+ *
+ * The NB model parameters (a, k, n) and the other mining parameters are
+ * fixed for the lifetime of the miner.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class IncrementalNBMiner implements StoredSelections {
+
+    private SparseSetOfItemsets db;
+    private double pi;
+    private double theta;
+    private double a;
+    private double k;
+    private int n;
+    private int maxlen;
+    private boolean rules;
+
+    private NBMiner miner = new NBMiner();
+
+    // tid-list per item
+    private TidList[] tidlists;
+
+    // selections of the visited itemsets (version = db size when computed)
+    private SelectionStore selections = new SelectionStore();
+
+    // selections recomputed/reused in the last run
+    private int recounted;
+    private int replayed;
+
+    public IncrementalNBMiner(SparseSetOfItemsets db,
+            double pi, double theta,
+            double a, double k, int n, int maxlen,
+            boolean rules){
+        this.db = db;
+        this.pi = pi;
+        this.theta = theta;
+        this.a = a;
+        this.k = k;
+        this.n = n;
+        this.maxlen = maxlen;
+        this.rules = rules;
+
+        tidlists = new TidList[db.items()];
+        for (int item = 0; item < tidlists.length; item++)
+            tidlists[item] = new TidList();
+        addTidlists(0);
+    }
+
+    // append a batch of transactions to the database
+    public void append(SetOfItemsets batch) {
+        int from = db.size();
+        int items = db.items();
+        db.append(batch);
+
+        if (db.items() > items) {
+            TidList[] newTidlists = new TidList[db.items()];
+            System.arraycopy(tidlists, 0, newTidlists, 0, tidlists.length);
+            for (int item = tidlists.length; item < newTidlists.length;
+                    item++)
+                newTidlists[item] = new TidList();
+            tidlists = newTidlists;
+
+            // NBSelect depends on the number of items
+            selections = new SelectionStore();
+        }
+
+        addTidlists(from);
+    }
+
+    // mine the current database (the limits and metrics of getMiner() are
+    // used; mining is always sequential)
+    public R_result R_mine(boolean verbatim, boolean debug) {
+        // a sink which raises the precision threshold (top-N) would change
+        // the selections
+        CSCResultSink sink = new CSCResultSink(db.items(), rules);
+
+        recounted = 0;
+        replayed = 0;
+        miner.setIncremental(this);
+        try {
+            miner.mine(db, pi, theta, a, k, n, maxlen, rules, verbatim, debug,
+                    sink);
+        }finally{
+            miner.setIncremental(null);
+        }
+
+        R_result result = sink.getResult();
+        result.setComplete(miner.isComplete());
+        return result;
+    }
+
+    public SparseSetOfItemsets getDb() {
+        return db;
+    }
+
+    public NBMiner getMiner() {
+        return miner;
+    }
+
+    public int getRecounted() {
+        return recounted;
+    }
+
+    public int getReplayed() {
+        return replayed;
+    }
+
+    // number of stored selections
+    public int getStored() {
+        return selections.size();
+    }
+
+
+    // out of date if l occurs in a transaction appended after the 
+    // selection was computed
+    public Selection getSelection(Itemset l) {
+        int id = selections.getTable().find(l);
+        Selection cs = selections.get(id);
+        if (cs == null) return null;
+
+        if (TidList.intersect(tidlists, l, selections.getVersion(id), 
+                    Integer.MAX_VALUE, null)) 
+            return null;
+
+        replayed++;
+        return cs;
+    }
+
+    public void setSelection(Itemset l, Selection cs) {
+        recounted++;
+        selections.set(selections.getTable().add(l), cs, db.size());
+    }
+
+    // the intersection of the tid-lists of the items in l
+    public void tidset(Itemset l, TidList target) {
+        target.clear();
+        TidList.intersect(tidlists, l, 0, Integer.MAX_VALUE, target);
+    }
+
+
+    private void addTidlists(int from) {
+        for (int tid = from; tid < db.size(); tid++)
+            for (long pos = db.start(tid); pos < db.end(tid); pos++)
+                tidlists[db.item(pos)].add(tid);
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        int[] i = {0,1,2, 0,1, 1,2, 0,1,2, 0,2, 0,1,2};
+        int[] p = {0, 3, 5, 7, 10, 12, 15};
+
+        SparseSetOfItemsets db = new SparseSetOfItemsets(
+                i.clone(), p.clone(), 3);
+        IncrementalNBMiner incremental = new IncrementalNBMiner(db,
+                0.5, 0.5, 1.0, 1.0, 6, 3, false);
+
+        R_result result = incremental.R_mine(false, false);
+        System.out.println("first run: " + result.getItems().size() +
+                " itemsets, " + incremental.getStored() + " selections");
+
+        incremental.append(new SparseSetOfItemsets(
+                new int[] {0,1, 2}, new int[] {0, 2, 3}, 3));
+        result = incremental.R_mine(false, false);
+        System.out.println("after append: " + result.getItems().size() +
+                " itemsets, recounted " + incremental.getRecounted() +
+                ", replayed " + incremental.getReplayed());
+
+        incremental.append(new SparseSetOfItemsets(
+                new int[0], new int[] {0}, 3));
+        result = incremental.R_mine(false, false);
+        System.out.println("empty batch: recounted " +
+                incremental.getRecounted() + ", replayed " +
+                incremental.getReplayed());
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Dense recoding of the items which occur in a database. Items which do
+ * not occur are only found as 1-itemsets (with precision 1) and they do
+ * not influence NBSelect (only the counts of the touched items are used),
+ * so the recoded database can be mined with arrays sized to the items
+ * which occur (see NBMiner). The codes keep the order of the items since
+ * the order of the DFS determines the precision of the itemsets.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class ItemRecoding {
+
+    // code of each item (-1 if the item does not occur) and item of each 
+    // code
+    private int[] codes;
+    private int[] items;
+
+    public ItemRecoding(int[] frequency) {
+        codes = new int[frequency.length];
+
+        int used = 0;
+        for (int item = 0; item < frequency.length; item++) 
+            codes[item] = frequency[item] > 0 ? used++ : -1;
+
+        items = new int[used];
+        for (int item = 0; item < frequency.length; item++) 
+            if (codes[item] >= 0) items[codes[item]] = item;
+    }
+
+    // number of items which do not occur
+    public int dropped() {
+        return codes.length - items.length;
+    }
+
+    // number of items before recoding
+    public int getItems() {
+        return codes.length;
+    }
+
+    public int getCode(int item) {
+        return codes[item];
+    }
+
+    public int getItem(int code) {
+        return items[code];
+    }
+
+    // the database with the items replaced by their codes
+    public SparseSetOfItemsets recode(SetOfItemsets db) {
+        int[] i = new int[(int) db.incidences()];
+        int[] p = new int[db.size() + 1];
+
+        int pos = 0;
+        for (int t = 0; t < db.size(); t++) {
+            for (long dbPos = db.start(t); dbPos < db.end(t); dbPos++)
+                i[pos++] = codes[db.item(dbPos)];
+            p[t+1] = pos;
+        }
+
+        return new SparseSetOfItemsets(i, p, items.length);
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        int[] i = {1,4,7, 4,7, 1, 9};
+        int[] p = {0, 3, 5, 6, 7};
+        SparseSetOfItemsets db = new SparseSetOfItemsets(i, p, 10);
+
+        ItemRecoding recoding = new ItemRecoding(
+                NBEstimator.itemFrequencies(db, 1));
+        System.out.println("dropped: " + recoding.dropped());
+
+        SparseSetOfItemsets recoded = recoding.recode(db);
+        System.out.println("recoded: " + recoded.getItemset(0) + 
+                " with " + recoded.items() + " items");
+        System.out.println("item of code 2: " + recoding.getItem(2));
+    }
+}
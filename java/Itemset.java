@@ -89,6 +89,16 @@ public class Itemset extends Association {
         return currentItem;
     }
     
+    // write the items of this itemset plus aItem (not contained) in 
+    // increasing order to target
+    public void extend(int aItem, int[] target) {
+        int j = 0;
+        int i = 0;
+        for (; i < size() && items[i] < aItem; i++) target[j++] = items[i];
+        target[j++] = aItem;
+        for (; i < size(); i++) target[j++] = items[i];
+    }
+
     public boolean contains(int item) {
         if(items==null) return false;
 
@@ -166,7 +176,8 @@ public class Itemset extends Association {
         System.out.println("set2 hash code? " + set2.hashCode());
         System.out.println("set3 hash code? " + set3.hashCode());
    
-        java.util.HashSet nbFrequentIS = new java.util.HashSet();
+        java.util.HashSet<Itemset> nbFrequentIS = 
+            new java.util.HashSet<Itemset>();
 
         nbFrequentIS.add(set1);
         System.out.println("contains set1? " + nbFrequentIS.contains(set1));
@@ -0,0 +1,220 @@
+/*
+ * Repository of itemsets with an int count per itemset. Open addressing
+ * table; the itemsets are stored as int sequences in a shared arena and 
+ * identified by dense ids (in order of insertion), so no objects are 
+ * created per entry. Itemsets are compared and hashed like Itemset.
+ * Itemsets can be marked (e.g., as NB-frequent).
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class ItemsetTable {
+
+    private static final int EMPTY = -1;
+
+    // keys: the items of entry e are arena[offset[e]+1 .. offset[e]+n]
+    // with n = arena[offset[e]]
+    private int[] arena = new int[1024];
+    private int arenaSize = 0;
+
+    // per entry
+    private int[] offset = new int[64];
+    private int[] hash = new int[64];
+    private int[] count = new int[64];
+    private byte[] marked = new byte[64];
+    private int size = 0;
+
+    // hash slots (entry ids)
+    private int[] slots;
+    private int mask;
+
+    public ItemsetTable() {
+        slots = new int[128];
+        java.util.Arrays.fill(slots, EMPTY);
+        mask = slots.length - 1;
+    }
+
+    // hash code as in Itemset.hashCode
+    public static int hashCode(int[] items, int length) {
+        int hashCode = 1;
+        for (int i = 0; i < length; i++) 
+            hashCode = hashCode * 31 + items[i];
+        return hashCode;
+    }
+
+    // id of the itemset (sorted items[0..length-1]) or -1 
+    public int find(int[] items, int length) {
+        int h = hashCode(items, length);
+        int slot = spread(h) & mask;
+
+        while (slots[slot] != EMPTY) {
+            int e = slots[slot];
+            if (hash[e] == h && equals(e, items, length)) return e;
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    public int find(Itemset itemset) {
+        return find(itemset.getItems(), itemset.size());
+    }
+
+    // id of the itemset, the itemset is added (with count 0) if needed 
+    public int add(int[] items, int length) {
+        int h = hashCode(items, length);
+        int slot = spread(h) & mask;
+
+        while (slots[slot] != EMPTY) {
+            int e = slots[slot];
+            if (hash[e] == h && equals(e, items, length)) return e;
+            slot = (slot + 1) & mask;
+        }
+
+        int e = newEntry(items, length, h);
+        slots[slot] = e;
+        if (size * 2 > slots.length) rehash();
+
+        return e;
+    }
+
+    public int add(Itemset itemset) {
+        return add(itemset.getItems(), itemset.size());
+    }
+
+    // increase the count and return the new count
+    public int increment(int id) {
+        return ++count[id];
+    }
+
+    public int getCount(int id) {
+        return count[id];
+    }
+
+    public void mark(int id) {
+        marked[id] = 1;
+    }
+
+    public boolean isMarked(int id) {
+        return marked[id] != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // number of items in an entry
+    public int length(int id) {
+        return arena[offset[id]];
+    }
+
+    // j-th item of an entry
+    public int get(int id, int j) {
+        return arena[offset[id] + 1 + j];
+    }
+
+    public Itemset getItemset(int id) {
+        int[] items = new int[length(id)];
+        System.arraycopy(arena, offset[id] + 1, items, 0, items.length);
+        return new Itemset(items);
+    }
+
+    // allocated bytes (approximate)
+    public long bytes() {
+        return 4L * (arena.length + offset.length + hash.length + 
+                count.length + slots.length) + marked.length;
+    }
+
+    private boolean equals(int e, int[] items, int length) {
+        int o = offset[e];
+        if (arena[o] != length) return false;
+        for (int i = 0; i < length; i++) 
+            if (arena[o + 1 + i] != items[i]) return false;
+        return true;
+    }
+
+    private int newEntry(int[] items, int length, int h) {
+        if (size == offset.length) {
+            int capacity = size * 2;
+            offset = grow(offset, capacity);
+            hash = grow(hash, capacity);
+            count = grow(count, capacity);
+            byte[] newMarked = new byte[capacity];
+            System.arraycopy(marked, 0, newMarked, 0, size);
+            marked = newMarked;
+        }
+
+        if (arenaSize + length + 1 > arena.length) 
+            arena = grow(arena, Math.max(arena.length * 2, 
+                        arenaSize + length + 1));
+
+        int e = size++;
+        offset[e] = arenaSize;
+        hash[e] = h;
+        count[e] = 0;
+        marked[e] = 0;
+
+        arena[arenaSize++] = length;
+        System.arraycopy(items, 0, arena, arenaSize, length);
+        arenaSize += length;
+
+        return e;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        java.util.Arrays.fill(slots, EMPTY);
+        mask = slots.length - 1;
+
+        for (int e = 0; e < size; e++) {
+            int slot = spread(hash[e]) & mask;
+            while (slots[slot] != EMPTY) slot = (slot + 1) & mask;
+            slots[slot] = e;
+        }
+    }
+
+    private static int spread(int h) {
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, 
+                Math.min(array.length, capacity));
+        return newArray;
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        ItemsetTable table = new ItemsetTable();
+
+        int [] items = {1,3,5,18,44}; 
+        int [] items2 = {1,3,18,44}; 
+        
+        int id = table.add(items, items.length);
+        table.increment(id);
+        table.increment(id);
+        table.add(items2, items2.length);
+
+        for (int i = 0; i < 1000; i++) {
+            int[] other = {i, i+1};
+            table.increment(table.add(other, 2));
+        }
+
+        System.out.println("size: " + table.size());
+        System.out.println("id of set1: " + table.find(items, items.length));
+        System.out.println("count of set1: " + table.getCount(id));
+        System.out.println("set1: " + table.getItemset(id));
+        System.out.println("find {3,4}: " + 
+                table.getItemset(table.find(new int[] {3,4}, 2)));
+        System.out.println("find {4,3,2}: " + 
+                table.find(new int[] {2,3,4}, 3));
+        System.out.println("hash code matches Itemset? " + 
+                (table.getItemset(id).hashCode() == 
+                 ItemsetTable.hashCode(items, items.length)));
+
+        table.mark(id);
+        System.out.println("set1 marked? " + table.isMarked(id));
+    }
+}
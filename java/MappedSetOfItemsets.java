@@ -0,0 +1,322 @@
+/*
+ * Set of itemsets (transaction database) stored in a memory-mapped file, so
+ * databases larger than the Java heap can be mined. The file uses the
+ * compressed sparse column layout of SparseSetOfItemsets (little endian):
+ *
+ *   header:  magic (int), version (int), items (int), size (int),
+ *            incidences (long)
+ *   p:       size+1 longs (start positions of the itemsets)
+ *   i:       incidences ints (item ids)
+ *
+ * The file is mapped in segments of 2^30 bytes. Files are created with
+ * write (from a database in memory) or writeBaskets (from a text file).
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.StringTokenizer;
+
+public class MappedSetOfItemsets implements SetOfItemsets {
+
+    private static final int MAGIC = 0x4E424442;   // "NBDB"
+    private static final int VERSION = 1;
+    private static final int HEADER = 24;
+
+    // segments are aligned with the longs and ints in the file
+    private static final int SEGMENT_BITS = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private MappedByteBuffer[] segments;
+    private String file;
+    private int items;
+    private int size;
+    private long incidences;
+    private long iOffset;  // file offset of i
+
+    public MappedSetOfItemsets(String file) throws IOException {
+        this.file = file;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        long length;
+        try {
+            FileChannel channel = raf.getChannel();
+            length = channel.size();
+
+            segments = new MappedByteBuffer[
+                (int) ((length + SEGMENT_MASK) >>> SEGMENT_BITS)];
+            for (int s = 0; s < segments.length; s++) {
+                long start = (long) s << SEGMENT_BITS;
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, 
+                        start, Math.min(SEGMENT_MASK + 1, length - start));
+                segments[s].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }finally{
+            // the mapping stays valid
+            raf.close();
+        }
+
+        if (length < HEADER || getInt(0) != MAGIC) 
+            throw new IOException(file + " is not an NBMiner database");
+        if (getInt(4) != VERSION) 
+            throw new IOException(file + " has unsupported version " + 
+                    getInt(4));
+
+        items = getInt(8);
+        size = getInt(12);
+        incidences = getLong(16);
+        iOffset = HEADER + 8L * (size + 1);
+
+        if (length != iOffset + 4 * incidences) 
+            throw new IOException(file + " is truncated");
+    }
+
+    public int size() { return size; }
+    public int items() { return items; }
+    public long incidences() { return incidences; }
+
+    public long start(int index) { return getLong(HEADER + 8L * index); }
+    public long end(int index) { return getLong(HEADER + 8L * (index+1)); }
+    public int item(long pos) { return getInt(iOffset + 4 * pos); }
+
+    // absolute gets do not change the buffers, so this is thread-safe
+    private int getInt(long offset) {
+        return segments[(int) (offset >>> SEGMENT_BITS)]
+            .getInt((int) (offset & SEGMENT_MASK));
+    }
+
+    private long getLong(long offset) {
+        return segments[(int) (offset >>> SEGMENT_BITS)]
+            .getLong((int) (offset & SEGMENT_MASK));
+    }
+
+    public Itemset getItemset(int index) {
+        int[] someitems = new int[(int) (end(index) - start(index))];
+        for (int its = 0; its < someitems.length; its++) 
+            someitems[its] = item(start(index) + its);
+        return new Itemset(someitems);
+    }
+
+    public String toString()  {
+        return("Memory-mapped set of " + size() + " itemsets (" + items + 
+                " items) in " + file);
+    }
+
+
+    // write a database to file
+    public static void write(SetOfItemsets db, String file) 
+        throws IOException {
+        Writer writer = new Writer(file, db.items(), db.size(), 
+                db.incidences());
+        try {
+            for (int t = 0; t < db.size(); t++) {
+                for (long pos = db.start(t), end = db.end(t); pos < end; pos++) 
+                    writer.add(db.item(pos));
+                writer.next();
+            }
+        }finally{
+            writer.close();
+        }
+    }
+
+    // convert a text file with one basket per line (item ids >= 0 
+    // separated by blanks, tabs or commas) to a database file. Duplicate
+    // items in a basket are removed. The file is read twice, so only one
+    // basket is held in memory.
+    public static void writeBaskets(String basketFile, String file) 
+        throws IOException {
+        int[] basket = new int[64];
+        int length;
+        int size = 0;
+        int items = 0;
+        long incidences = 0;
+        String line;
+
+        // first pass: dimensions
+        BufferedReader reader = new BufferedReader(new FileReader(basketFile));
+        try {
+            while ((line = reader.readLine()) != null) {
+                basket = parseBasket(line, basket);
+                length = basket[0];
+                if (length > 0 && basket[length] >= items) 
+                    items = basket[length] + 1;
+                incidences += length;
+                size++;
+            }
+        }finally{
+            reader.close();
+        }
+
+        // second pass: write
+        Writer writer = new Writer(file, items, size, incidences);
+        reader = new BufferedReader(new FileReader(basketFile));
+        try {
+            while ((line = reader.readLine()) != null) {
+                basket = parseBasket(line, basket);
+                for (int j = 1; j <= basket[0]; j++) writer.add(basket[j]);
+                writer.next();
+            }
+        }finally{
+            reader.close();
+            writer.close();
+        }
+    }
+
+    // the sorted unique items of a basket in basket[1..basket[0]] 
+    private static int[] parseBasket(String line, int[] basket) {
+        StringTokenizer tokens = new StringTokenizer(line, " \t,");
+        int length = 0;
+
+        while (tokens.hasMoreTokens()) {
+            int item = Integer.parseInt(tokens.nextToken());
+            if (item < 0) 
+                throw new NumberFormatException("negative item id: " + item);
+
+            if (length + 1 == basket.length) 
+                basket = Arrays.copyOf(basket, basket.length * 2);
+            basket[++length] = item;
+        }
+
+        Arrays.sort(basket, 1, length + 1);
+        int unique = 0;
+        for (int j = 1; j <= length; j++) 
+            if (unique == 0 || basket[j] != basket[unique]) 
+                basket[++unique] = basket[j];
+        basket[0] = unique;
+
+        return basket;
+    }
+
+    // writes p and i through two buffers at their positions in the file 
+    private static class Writer {
+        private static final int BUFFER = 1 << 16;
+
+        private FileChannel channel;
+        private ByteBuffer pBuffer;
+        private ByteBuffer iBuffer;
+        private long pPosition;
+        private long iPosition;
+
+        private String file;
+        private int size;
+        private long incidences;
+        private int written = 0;
+        private long position = 0;
+
+        Writer(String file, int items, int size, long incidences) 
+            throws IOException {
+            this.file = file;
+            this.size = size;
+            this.incidences = incidences;
+
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            raf.setLength(0);
+            channel = raf.getChannel();
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER);
+            header.order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(items).putInt(size)
+                .putLong(incidences);
+            header.flip();
+            write(header, 0);
+
+            pBuffer = ByteBuffer.allocate(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            iBuffer = ByteBuffer.allocate(BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            pPosition = HEADER;
+            iPosition = HEADER + 8L * (size + 1);
+
+            pBuffer.putLong(0);
+        }
+
+        void add(int item) throws IOException {
+            if (!iBuffer.hasRemaining()) iPosition = flush(iBuffer, iPosition);
+            iBuffer.putInt(item);
+            position++;
+        }
+
+        // end of the current itemset
+        void next() throws IOException {
+            if (!pBuffer.hasRemaining()) pPosition = flush(pBuffer, pPosition);
+            pBuffer.putLong(position);
+            written++;
+        }
+
+        void close() throws IOException {
+            try {
+                pPosition = flush(pBuffer, pPosition);
+                iPosition = flush(iBuffer, iPosition);
+            }finally{
+                channel.close();
+            }
+
+            if (written != size || position != incidences) 
+                throw new IOException("database changed while writing " + 
+                        file);
+        }
+
+        private long flush(ByteBuffer buffer, long filePosition) 
+            throws IOException {
+            buffer.flip();
+            filePosition = write(buffer, filePosition);
+            buffer.clear();
+            return filePosition;
+        }
+
+        private long write(ByteBuffer buffer, long filePosition) 
+            throws IOException {
+            while (buffer.hasRemaining()) 
+                filePosition += channel.write(buffer, filePosition);
+            return filePosition;
+        }
+    }
+
+
+    // tests
+    public static void main(String[] arg) throws IOException {
+        int [] items = {1,18,3,44,5};
+        int [] items2 = {1,18,3,44};
+        Itemset set1 = new Itemset(items);
+        Itemset set2 = new Itemset(set1,11);
+        Itemset set3 = new Itemset(items2);
+
+        java.util.Vector<Itemset> dbV = new java.util.Vector<Itemset>();
+        dbV.add(set1);
+        dbV.add(set2);
+        dbV.add(set3);
+        SparseSetOfItemsets db = new SparseSetOfItemsets(dbV, 50);
+
+        java.io.File file = java.io.File.createTempFile("nbminer", ".db");
+        file.deleteOnExit();
+        write(db, file.getPath());
+
+        MappedSetOfItemsets mapped = new MappedSetOfItemsets(file.getPath());
+        System.out.println(mapped);
+        System.out.println("size: " + mapped.size() + " items: " + 
+                mapped.items() + " incidences: " + mapped.incidences());
+        for (int t = 0; t < mapped.size(); t++) 
+            System.out.println(mapped.getItemset(t) + " equals original? " + 
+                    mapped.getItemset(t).equals(db.getItemset(t)));
+
+        java.io.File baskets = java.io.File.createTempFile("nbminer", ".txt");
+        baskets.deleteOnExit();
+        java.io.PrintWriter out = new java.io.PrintWriter(baskets);
+        out.println("3 1 2");
+        out.println("");
+        out.println("7,7, 0");
+        out.close();
+
+        writeBaskets(baskets.getPath(), file.getPath());
+        mapped = new MappedSetOfItemsets(file.getPath());
+        System.out.println(mapped);
+        for (int t = 0; t < mapped.size(); t++) 
+            System.out.println(mapped.getItemset(t));
+    }
+}
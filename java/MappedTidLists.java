@@ -0,0 +1,206 @@
+/*
+ * The tid-lists of the single items of a memory-mapped database (see
+ * MappedSetOfItemsets) in a temporary memory-mapped file. The first level
+ * of the DFS would otherwise keep a tid-list per item on the heap (4 bytes
+ * per incidence), so the database would have to fit on the heap after
+ * all. The DFS gets a Stored tidset per item, which is read into a
+ * tid-list on the heap only while the node of the item is counted (see
+ * NBMiner.count), so the heap only holds one first-level tid-list (per
+ * thread) at a time.
+ *
+ * The file holds the tids of item 0, item 1, ... as ints (native byte
+ * order) and is mapped in segments of 2^30 bytes. It is created in the
+ * directory java.io.tmpdir and deleted by close.
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+
+public class MappedTidLists {
+
+    // ints per segment (segments hold whole ints)
+    private static final int SEGMENT_BITS = 28;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private File file;
+    private IntBuffer[] segments;
+    private int transactions;
+
+    // position of the first tid of each item (in ints)
+    private long[] start;
+
+    // frequency[item] of the items in db (see NBEstimator.itemFrequencies)
+    public MappedTidLists(SetOfItemsets db, int[] frequency)
+        throws IOException {
+        transactions = db.size();
+        start = new long[frequency.length + 1];
+        for (int item = 0; item < frequency.length; item++)
+            start[item+1] = start[item] + frequency[item];
+        long length = 4 * start[frequency.length];
+
+        file = File.createTempFile("nbminer", ".tids");
+        file.deleteOnExit();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(length);
+            FileChannel channel = raf.getChannel();
+
+            segments = new IntBuffer[(int) ((start[frequency.length] +
+                            SEGMENT_MASK) >>> SEGMENT_BITS)];
+            for (int s = 0; s < segments.length; s++) {
+                long from = (long) s << SEGMENT_BITS;
+                long ints = Math.min(SEGMENT_MASK + 1,
+                        start[frequency.length] - from);
+                segments[s] = channel.map(FileChannel.MapMode.READ_WRITE,
+                        4 * from, 4 * ints).order(ByteOrder.nativeOrder())
+                    .asIntBuffer();
+            }
+        }finally{
+            // the mapping stays valid
+            raf.close();
+        }
+
+        // the transactions are read in order, so the tid-lists are sorted
+        long[] next = new long[frequency.length];
+        System.arraycopy(start, 0, next, 0, frequency.length);
+        for (int tid = 0; tid < transactions; tid++)
+            for (long pos = db.start(tid), end = db.end(tid); pos < end;
+                    pos++) {
+                long position = next[db.item(pos)]++;
+                segments[(int) (position >>> SEGMENT_BITS)]
+                    .put((int) (position & SEGMENT_MASK), tid);
+            }
+    }
+
+    // number of tids of item
+    public int size(int item) {
+        return (int) (start[item+1] - start[item]);
+    }
+
+    // the tidset of item (item -1: all transactions)
+    public Stored getTidset(int item) {
+        return new Stored(item);
+    }
+
+    // read the tids of item into target (which is cleared)
+    public void load(int item, TidList target) {
+        target.clear();
+        if (item < 0) {
+            for (int tid = 0; tid < transactions; tid++) target.add(tid);
+            return;
+        }
+
+        // absolute gets do not change the buffers, so this is thread-safe
+        for (long position = start[item]; position < start[item+1];
+                position++)
+            target.add(segments[(int) (position >>> SEGMENT_BITS)]
+                    .get((int) (position & SEGMENT_MASK)));
+    }
+
+    // delete the file (the mapping is released by the garbage collector)
+    public void close() {
+        segments = null;
+        file.delete();
+    }
+
+    // the tid-list of an item in the file
+    public class Stored extends Tidset {
+        private int item;
+
+        Stored(int item) {
+            this.item = item;
+        }
+
+        public int getItem() {
+            return item;
+        }
+
+        public int size() {
+            return item < 0 ? transactions : MappedTidLists.this.size(item);
+        }
+
+        // read the tids into target
+        public void load(TidList target) {
+            MappedTidLists.this.load(item, target);
+        }
+
+        // the stored tids do not change
+        public Tidset copy() {
+            return this;
+        }
+    }
+
+
+    // tests (with a database file: mine it, see NBMiner.search)
+    public static void main(String[] arg) throws Exception {
+        if (arg.length > 0) {
+            MappedSetOfItemsets db = new MappedSetOfItemsets(arg[0]);
+            NBEstimator estimator = new NBEstimator(db, 2);
+            estimator.estimate(0.0, true);
+            R_result result = new NBMiner().R_mine(db, 0.99, 0.5,
+                    estimator.getA(), estimator.getK(), estimator.getN(), 3,
+                    false, false, false, 2);
+            System.out.println(result.getPrecision().length +
+                    " itemsets, " + Runtime.getRuntime().maxMemory() /
+                    (1024 * 1024) + " MB heap");
+            return;
+        }
+
+        int[] i = {0,1,2, 0,1, 1,2, 0,1,2, 0,2, 0,1,2};
+        int[] p = {0, 3, 5, 7, 10, 12, 15};
+        SparseSetOfItemsets small = new SparseSetOfItemsets(i, p, 4);
+        MappedTidLists lists = new MappedTidLists(small,
+                NBEstimator.itemFrequencies(small, 1));
+        TidList list = new TidList();
+        for (int item = 0; item < 4; item++) {
+            lists.load(item, list);
+            System.out.println("tid-list of " + item + ": " + list);
+        }
+        lists.close();
+
+        // a database file with 2 million transactions of 16 items (128 MB
+        // of tid-lists) mined with a heap of 96 MB. Transaction t has one
+        // of the items 64*j..64*j+63 (skewed towards 64*j) for every j, in
+        // every 50th transaction the items 64*j+63 co-occur.
+        final int size = 2000000;
+        SetOfItemsets generated = new SetOfItemsets() {
+            public int size() { return size; }
+            public int items() { return 1024; }
+            public long incidences() { return 16L * size; }
+            public long start(int index) { return 16L * index; }
+            public long end(int index) { return 16L * (index+1); }
+            public int item(long pos) {
+                int tid = (int) (pos / 16);
+                if (tid % 50 == 0) return (int) (pos % 16) * 64 + 63;
+                long h = pos * 0x9E3779B97F4A7C15L;
+                h = (h ^ (h >>> 31)) * 0xBF58476D1CE4E5B9L;
+                double u = (h >>> 11) / (double) (1L << 53);
+                return (int) (pos % 16) * 64 + (int) (64 * u * u);
+            }
+        };
+        File db = File.createTempFile("nbminer", ".db");
+        try {
+            MappedSetOfItemsets.write(generated, db.getPath());
+
+            String java = System.getProperty("java.home") + File.separator +
+                "bin" + File.separator + "java";
+            ProcessBuilder builder = new ProcessBuilder(new String[] {
+                java, "-Xmx96m", "-cp", System.getProperty("java.class.path"),
+                "MappedTidLists", db.getPath()});
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+            System.out.print("mapped file with 128 MB of tid-lists: ");
+            System.out.flush();
+            System.out.println(builder.start().waitFor() == 0 ?
+                    "mined" : "FAILED");
+        }finally{
+            db.delete();
+        }
+    }
+}
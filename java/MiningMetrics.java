@@ -0,0 +1,188 @@
+/*
+ * Low-overhead instrumentation of a mining run (see NBMiner.setMetrics).
+ * Per depth of the DFS (the size of the itemset of a node) we record the
+ * nodes, the sizes of their projected databases and the candidates going
+ * into (items counted) and out of (items selected) NBSelect. Each mining
+ * thread records its own metrics, which are merged after the run.
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.lang.management.ManagementFactory;
+
+public class MiningMetrics {
+
+    // per depth
+    private long[] nodes = new long[8];
+    private long[] projected = new long[8];     // sum of the tidset sizes
+    private long[] maxProjected = new long[8];
+    private long[] candidatesIn = new long[8];
+    private long[] candidatesOut = new long[8];
+    private int depths = 0;
+
+    private long countNanos = 0;
+    private long selectNanos = 0;
+    private long runNanos = 0;
+    private long allocatedBytes = -1;
+    private long modelCacheHits = 0;
+    private long modelCacheMisses = 0;
+    private long repositorySize = 0;
+    private long repositoryBytes = 0;
+    private long revisits = 0;
+    private long tidlistBytes = 0;
+    private long patterns = 0;
+    private int threads = 1;
+
+    // a node at depth with a projected db of projectedSize transactions, 
+    // in counted and out selected items
+    public void node(int depth, int projectedSize, int in, int out, 
+            long countTime, long selectTime) {
+        ensure(depth + 1);
+
+        nodes[depth]++;
+        projected[depth] += projectedSize;
+        if (maxProjected[depth] < projectedSize) 
+            maxProjected[depth] = projectedSize;
+        candidatesIn[depth] += in;
+        candidatesOut[depth] += out;
+
+        countNanos += countTime;
+        selectNanos += selectTime;
+    }
+
+    // merge the metrics of another thread
+    public void add(MiningMetrics other) {
+        ensure(other.depths);
+
+        for (int d = 0; d < other.depths; d++) {
+            nodes[d] += other.nodes[d];
+            projected[d] += other.projected[d];
+            maxProjected[d] = Math.max(maxProjected[d], other.maxProjected[d]);
+            candidatesIn[d] += other.candidatesIn[d];
+            candidatesOut[d] += other.candidatesOut[d];
+        }
+
+        countNanos += other.countNanos;
+        selectNanos += other.selectNanos;
+        modelCacheHits += other.modelCacheHits;
+        modelCacheMisses += other.modelCacheMisses;
+        tidlistBytes += other.tidlistBytes;
+    }
+
+    void setModelCache(long hits, long misses) {
+        modelCacheHits = hits;
+        modelCacheMisses = misses;
+    }
+
+    // revisits: candidates which reached an itemset already explored (the
+    // DFS explores, and counts, each itemset once; later visits only
+    // increment its count in the repository)
+    void setRepository(int size, long bytes, long revisits) {
+        repositorySize = size;
+        repositoryBytes = bytes;
+        this.revisits = revisits;
+    }
+
+    // bytes of the tid-lists kept by a thread for the DFS (their peak, see
+    // Counts.tidlistBytes)
+    void setTidlists(long bytes) {
+        tidlistBytes = bytes;
+    }
+
+    void setRun(long nanos, long allocated, long patterns, int threads) {
+        runNanos = nanos;
+        allocatedBytes = allocated;
+        this.patterns = patterns;
+        this.threads = threads;
+    }
+
+    private void ensure(int size) {
+        if (size <= depths) return;
+
+        if (size > nodes.length) {
+            int capacity = Math.max(size, nodes.length * 2);
+            nodes = grow(nodes, capacity);
+            projected = grow(projected, capacity);
+            maxProjected = grow(maxProjected, capacity);
+            candidatesIn = grow(candidatesIn, capacity);
+            candidatesOut = grow(candidatesOut, capacity);
+        }
+        depths = size;
+    }
+
+    private static long[] grow(long[] array, int capacity) {
+        long[] newArray = new long[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    // bytes allocated by the threads so far (-1 if the JVM cannot measure 
+    // it)
+    static long allocatedBytes(long[] threadIds) {
+        try {
+            java.lang.management.ThreadMXBean bean = 
+                ManagementFactory.getThreadMXBean();
+            if (!(bean instanceof com.sun.management.ThreadMXBean)) 
+                return -1;
+
+            long[] bytes = ((com.sun.management.ThreadMXBean) bean)
+                .getThreadAllocatedBytes(threadIds);
+            long sum = 0;
+            for (int i = 0; i < bytes.length; i++) 
+                if (bytes[i] > 0) sum += bytes[i];
+            return sum;
+        }catch(Throwable e){
+            return -1;
+        }
+    }
+
+    // accessors (double arrays for R)
+    public int getDepths() { return depths; }
+    public double[] getNodes() { return toDouble(nodes); }
+    public double[] getProjected() { return toDouble(projected); }
+    public double[] getMaxProjected() { return toDouble(maxProjected); }
+    public double[] getCandidatesIn() { return toDouble(candidatesIn); }
+    public double[] getCandidatesOut() { return toDouble(candidatesOut); }
+
+    // names and values of the summary metrics (times in seconds)
+    public String[] getNames() {
+        return new String[] {"nodes", "patterns", "repository_size",
+            "repository_bytes", "repository_revisits", "tidlist_bytes",
+            "count_time", "select_time", "run_time", "allocated_bytes", 
+            "model_cache_hits", "model_cache_misses", "threads"};
+    }
+
+    public double[] getValues() {
+        long totalNodes = 0;
+        for (int d = 0; d < depths; d++) totalNodes += nodes[d];
+
+        return new double[] {totalNodes, patterns, repositorySize, 
+            repositoryBytes, revisits, tidlistBytes, countNanos / 1e9, 
+            selectNanos / 1e9, runNanos / 1e9, allocatedBytes, 
+            modelCacheHits, modelCacheMisses, threads};
+    }
+
+    private double[] toDouble(long[] array) {
+        double[] values = new double[depths];
+        for (int d = 0; d < depths; d++) values[d] = array[d];
+        return values;
+    }
+
+    public String toString() {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("depth\tnodes\tavg. projected\tmax. projected\t" +
+                "in\tout\n");
+        for (int d = 0; d < depths; d++) 
+            buffer.append(d + "\t" + nodes[d] + "\t" + 
+                    (nodes[d] > 0 ? projected[d] / nodes[d] : 0) + "\t" + 
+                    maxProjected[d] + "\t" + candidatesIn[d] + "\t" + 
+                    candidatesOut[d] + "\n");
+
+        String[] names = getNames();
+        double[] values = getValues();
+        for (int i = 0; i < names.length; i++) 
+            buffer.append(names[i] + ": " + values[i] + "\n");
+
+        return buffer.toString();
+    }
+}
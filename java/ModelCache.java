@@ -0,0 +1,204 @@
+/*
+ * LRU cache of the negative binomial model tables used by NBSelect. The
+ * expected frequencies only depend on the rescaled parameters (rRescale
+ * and nRescaled), so nodes with the same parameters share a table. A table
+ * is computed only up to the largest r requested so far and extended on
+ * demand. Values are computed exactly as in NBSelect.
+ *
+ * Entries are addressed by an index which is valid until the next lookup.
+ * New entries are only allocated while the tables take less than
+ * MAX_DOUBLES (large databases have long tables), otherwise the least
+ * recently used entry is reused.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class ModelCache {
+
+    // doubles of all tables (8 MB) before entries are reused
+    private static final long MAX_DOUBLES = 1 << 20;
+
+    private double k;
+    private double a;
+    private int capacity;
+
+    // entries
+    private int[] rRescale;
+    private int[] nRescaled;
+    private double[][] model;   // model[e][r]: expected number of items with r
+    private double[][] rest;    // rest[e][r]: nRescaled - sum of model[e][<r]
+    private int[] length;       // computed part of the table
+    private int size;
+    private long doubles;       // allocated doubles of model and rest
+
+    // hash buckets (chained, entry index + 1) 
+    private int[] bucket;
+    private int[] chain;
+
+    // LRU list (entry indices, -1 ends the list)
+    private int[] prev;
+    private int[] next;
+    private int head = -1;
+    private int tail = -1;
+
+    private long hits;
+    private long misses;
+
+    public ModelCache(double k, double a, int capacity) {
+        this.k = k;
+        this.a = a;
+        this.capacity = capacity;
+
+        rRescale = new int[capacity];
+        nRescaled = new int[capacity];
+        model = new double[capacity][];
+        rest = new double[capacity][];
+        length = new int[capacity];
+        chain = new int[capacity];
+        prev = new int[capacity];
+        next = new int[capacity];
+
+        int buckets = 1;
+        while (buckets < 2 * capacity) buckets <<= 1;
+        bucket = new int[buckets];
+    }
+
+    // get the entry for the parameters with the table computed for
+    // 0..rMax
+    public int lookup(int rRescale, int nRescaled, int rMax) {
+        int h = hash(rRescale, nRescaled);
+
+        int e = bucket[h] - 1;
+        while (e >= 0 && 
+                (this.rRescale[e] != rRescale || 
+                 this.nRescaled[e] != nRescaled)) 
+            e = chain[e] - 1;
+
+        if (e >= 0) {
+            hits++;
+            unlink(e);
+        }else{
+            misses++;
+            if (size < capacity && (size == 0 || doubles < MAX_DOUBLES)) {
+                e = size++;
+                model[e] = new double[Math.max(rMax+1, 16)];
+                rest[e] = new double[Math.max(rMax+1, 16)];
+                doubles += 2 * model[e].length;
+            }else{
+                // evict the least recently used entry
+                e = tail;
+                unlink(e);
+                removeFromBucket(e);
+            }
+
+            this.rRescale[e] = rRescale;
+            this.nRescaled[e] = nRescaled;
+            length[e] = 0;
+            chain[e] = bucket[h];
+            bucket[h] = e + 1;
+        }
+
+        linkFirst(e);
+        extend(e, rMax);
+        return e;
+    }
+
+    // expected number of items with r co-occurrences for a table with 
+    // maximum rMax (the last class takes the rest)
+    public double get(int e, int r, int rMax) {
+        if (r < rMax) return model[e][r];
+        if (rMax == 0) return 0.0;
+        return rest[e][rMax];
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    private void extend(int e, int rMax) {
+        if (length[e] > rMax) return;
+
+        if (model[e].length <= rMax) {
+            int newLength = Math.max(rMax+1, model[e].length * 2);
+            double[] newModel = new double[newLength];
+            double[] newRest = new double[newLength];
+            System.arraycopy(model[e], 0, newModel, 0, length[e]);
+            System.arraycopy(rest[e], 0, newRest, 0, length[e]);
+            doubles += 2 * (newLength - model[e].length);
+            model[e] = newModel;
+            rest[e] = newRest;
+        }
+
+        double[] m = model[e];
+        double[] s = rest[e];
+        double aRescaled = a * rRescale[e];
+        int r = length[e];
+
+        if (r == 0) {
+            m[0] = nRescaled[e] * Math.pow(1+aRescaled,-1*k);
+            s[0] = (double) nRescaled[e];
+            r = 1;
+        }
+
+        for (; r <= rMax; r++) {
+            m[r] = (k+(r-1))/((r-1)+1) * aRescaled/(1+aRescaled) * m[r-1];
+            s[r] = s[r-1] - m[r-1];
+        }
+
+        length[e] = rMax + 1;
+    }
+
+    private int hash(int rRescale, int nRescaled) {
+        int h = rRescale * 31 + nRescaled;
+        h ^= h >>> 16;
+        return h & (bucket.length - 1);
+    }
+
+    private void removeFromBucket(int e) {
+        int h = hash(rRescale[e], nRescaled[e]);
+        if (bucket[h] == e + 1) {
+            bucket[h] = chain[e];
+            return;
+        }
+
+        int c = bucket[h] - 1;
+        while (chain[c] != e + 1) c = chain[c] - 1;
+        chain[c] = chain[e];
+    }
+
+    private void unlink(int e) {
+        if (prev[e] >= 0) next[prev[e]] = next[e];
+        else head = next[e];
+        if (next[e] >= 0) prev[next[e]] = prev[e];
+        else tail = prev[e];
+    }
+
+    private void linkFirst(int e) {
+        prev[e] = -1;
+        next[e] = head;
+        if (head >= 0) prev[head] = e;
+        head = e;
+        if (tail < 0) tail = e;
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        ModelCache cache = new ModelCache(0.98, 0.0014, 2);
+
+        int e = cache.lookup(100, 700, 5);
+        for (int r = 0; r <= 5; r++) 
+            System.out.println("r=" + r + ": " + cache.get(e, r, 5));
+
+        cache.lookup(200, 700, 3);
+        cache.lookup(100, 700, 8);
+        cache.lookup(300, 700, 3);  // evicts (200, 700)
+        cache.lookup(200, 700, 3);
+
+        System.out.println("hits: " + cache.getHits() + 
+                " misses: " + cache.getMisses());
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Estimation of the global negative binomial model of the item frequencies
+ * (the Java version of NBMinerParameters/.estim_nbinom in R). The item
+ * frequencies are counted in one pass over the incidences of the database
+ * (in parallel over chunks of positions). The items which do not occur
+ * are not observable, so the zero class is estimated with the EM
+ * algorithm (missing zeros) unless the method of moments is requested.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class NBEstimator {
+
+    private static final double TOL = 0.0001;
+
+    // positions counted per thread at least
+    private static final long MIN_CHUNK = 1 << 16;
+
+    private int[] frequency;
+    private long incidences;
+
+    // fitted model
+    private double k;
+    private double mean;
+    private double var;
+    private int n;
+    private int trimmedItems;
+    private int rMax;
+    private int iterations;
+
+    // observed frequency histogram (r = 0..rMax after trimming; the zero
+    // class is the estimate)
+    private double[] obs;
+
+    private boolean verbatim = false;
+
+    // count the item frequencies of db with threads (0 uses all cores)
+    public NBEstimator(SetOfItemsets db, int threads) {
+        incidences = db.incidences();
+        frequency = itemFrequencies(db, threads);
+    }
+
+    // estimate the model (trim: fraction of items to trim off the tail of
+    // the frequency distribution)
+    public void estimate(double trim, boolean missingZeros) {
+        int max = 0;
+        for (int item = 0; item < frequency.length; item++)
+            if (max < frequency[item]) max = frequency[item];
+
+        // the items with 0 occurrences are unobservable
+        double[] hist = new double[max + 1];
+        for (int item = 0; item < frequency.length; item++)
+            if (frequency[item] > 0) hist[frequency[item]]++;
+
+        double items = sum(hist);
+        int last = hist.length - 1;
+
+        // trim items from the tail
+        trimmedItems = 0;
+        if (trim > 0) {
+            while (trimmedItems < items * trim && last > 0) {
+                trimmedItems += hist[last];
+                hist[last] = 0;
+                last--;
+            }
+
+            items = sum(hist);
+            if (verbatim) System.out.println(trimmedItems +
+                    " item(s) trimmed, leaving " + (int) items + " items.");
+        }
+
+        // clear trailing zeros
+        while (last > 0 && hist[last] == 0) last--;
+        obs = new double[last + 1];
+        System.arraycopy(hist, 0, obs, 0, last + 1);
+        rMax = last;
+        iterations = 0;
+
+        if (!missingZeros) {
+            if (verbatim) System.out.println("using method of moments");
+            moments(obs);
+            n = (int) items;
+            return;
+        }
+
+        if (verbatim) System.out.println(
+                "using Expectation Maximization for missing zero class");
+
+        // start values (lower bound for the zero class)
+        obs[0] = obs.length > 1 ? obs[1] : 0;
+        moments(obs);
+
+        double kOld = 0;
+        double p0 = 0;
+        do {
+            if (Double.isNaN(k) || Double.isNaN(mean) || Double.isNaN(p0))
+                throw new IllegalArgumentException("Unable to fit " +
+                        "distribution. Did you trim too many items?");
+            if (Math.abs(k - kOld) <= TOL) break;
+
+            iterations++;
+            kOld = k;
+
+            // update the zero class
+            p0 = Math.pow(k / (k + mean), k);
+            obs[0] = Math.rint(items / (1 - p0) * p0);
+
+            moments(obs);
+
+            if (verbatim) System.out.println("iteration = " + iterations +
+                    ", zero class = " + obs[0] + ", k = " + k +
+                    ", m = " + mean);
+        }while (true);
+
+        n = (int) (items + obs[0]);
+        if (verbatim) System.out.println("total items = " + n);
+    }
+
+    public void setVerbatim(boolean verbatim) {
+        this.verbatim = verbatim;
+    }
+
+    public double getK() {
+        return k;
+    }
+
+    // a per incidence (as used by NBMiner)
+    public double getA() {
+        return mean * k / incidences;
+    }
+
+    public int getN() {
+        return n;
+    }
+
+    public double getMean() {
+        return mean;
+    }
+
+    public double getVar() {
+        return var;
+    }
+
+    public int getTrimmedItems() {
+        return trimmedItems;
+    }
+
+    public int getRMax() {
+        return rMax;
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public double[] getObs() {
+        return obs;
+    }
+
+    public int[] getFrequencies() {
+        return frequency;
+    }
+
+    // frequency of each item in db. The positions are split into chunks
+    // which are counted by separate threads and added up.
+    public static int[] itemFrequencies(final SetOfItemsets db, int threads) {
+        if (threads < 1) threads = Runtime.getRuntime().availableProcessors();
+
+        long total = db.incidences();
+        int chunks = (int) Math.max(1,
+                Math.min(threads, total / MIN_CHUNK));
+
+        final int[][] counts = new int[chunks][];
+        Thread[] workers = new Thread[chunks];
+
+        for (int c = 0; c < chunks; c++) {
+            final int chunk = c;
+            final long from = total * c / chunks;
+            final long to = total * (c+1) / chunks;
+
+            workers[c] = new Thread() {
+                public void run() {
+                    counts[chunk] = count(db, from, to);
+                }
+            };
+            if (chunks > 1) workers[c].start();
+            else workers[c].run();
+        }
+
+        if (chunks > 1) {
+            for (int c = 0; c < chunks; c++) {
+                try {
+                    workers[c].join();
+                }catch(InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        int[] frequency = counts[0];
+        for (int c = 1; c < chunks; c++)
+            for (int item = 0; item < frequency.length; item++)
+                frequency[item] += counts[c][item];
+
+        return frequency;
+    }
+
+    // count the items at the positions from..to-1
+    private static int[] count(SetOfItemsets db, long from, long to) {
+        int[] frequency = new int[db.items()];
+
+        if (db instanceof SparseSetOfItemsets) {
+            int[] i = ((SparseSetOfItemsets) db).backingI();
+            for (int pos = (int) from; pos < (int) to; pos++)
+                frequency[i[pos]]++;
+        }else{
+            for (long pos = from; pos < to; pos++) frequency[db.item(pos)]++;
+        }
+
+        return frequency;
+    }
+
+    // method of moments (equal to the max. likelihood estimates)
+    private void moments(double[] hist) {
+        double items = sum(hist);
+
+        double sum = 0.0;
+        for (int r = 0; r < hist.length; r++) sum += hist[r] * r;
+        mean = sum / items;
+
+        double sq = 0.0;
+        for (int r = 0; r < hist.length; r++)
+            sq += hist[r] * (r - mean) * (r - mean);
+        var = sq / (items - 1);
+
+        k = mean * mean / (var - mean);
+    }
+
+    private static double sum(double[] hist) {
+        double sum = 0.0;
+        for (int r = 0; r < hist.length; r++) sum += hist[r];
+        return sum;
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        // items 0..4 with frequencies 1, 1, 2, 3, 6 (item 5 does not occur)
+        int[] i = {0,1,2,3,4, 2,3,4, 3,4, 4, 4, 4};
+        int[] p = {0, 5, 8, 10, 11, 12, 13};
+        SparseSetOfItemsets db = new SparseSetOfItemsets(i, p, 6);
+
+        NBEstimator estimator = new NBEstimator(db, 2);
+        estimator.setVerbatim(true);
+        estimator.estimate(0, true);
+        System.out.println("k = " + estimator.getK() + ", a = " +
+                estimator.getA() + ", n = " + estimator.getN());
+
+        estimator.estimate(0.2, false);
+        System.out.println("k = " + estimator.getK() + ", a = " +
+                estimator.getA() + ", n = " + estimator.getN());
+    }
+}
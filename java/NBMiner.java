@@ -12,16 +12,53 @@
  */
 
 import java.text.NumberFormat;
+import java.io.IOException;
 import java.io.PrintStream;
-import java.util.Hashtable;
-import java.util.HashSet;
-import java.util.Vector;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.Vector;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 public class NBMiner {
 
-    private SparseSetOfItemsets db;
-    private R_result result;
+    // vertical representation of the projected databases
+    public static final int AUTO = 0;
+    public static final int TIDLISTS = 1;
+    public static final int BITSETS = 2;
+
+    // tid-lists for the first level, projected databases below (as long as
+    // they take less than PROJECTED_MEMORY of the maximal heap)
+    public static final int PROJECTED = 3;
+    private static final double PROJECTED_MEMORY = 0.25;
+
+    // tid-lists with varint coded gaps (see CompressedTidList). AUTO uses 
+    // them if the plain tid-lists of the first level would take more than
+    // COMPRESSED_MEMORY of the maximal heap and compress to at most half.
+    public static final int COMPRESSED = 4;
+    private static final double COMPRESSED_MEMORY = 0.25;
+
+    // AUTO uses bitsets for databases with at least this density
+    // (incidences/(transactions*items)) if they take less than 
+    // BITSET_MEMORY of the maximal heap
+    private static final double BITSET_DENSITY = 0.02;
+    private static final double BITSET_MEMORY = 0.25;
+
+    // a node switches from bitsets to tid-lists if scanning its 
+    // transactions costs less than BITSET_SPARSE times scanning the words 
+    private static final int BITSET_SPARSE = 4;
+
+    private SetOfItemsets db;
+
+    // i and p of db if it is a SparseSetOfItemsets
+    private int[] dbI;
+    private int[] dbP;
+    private ResultSink sink;
 
     private double pi;
     private double theta;
@@ -30,25 +67,254 @@ public class NBMiner {
     private int n;
     private int maxlen;
     private boolean rules;
+    private int threads = 1;
+    private int representation = AUTO;
+    private long projectionBudget;  // ints per thread
+    private boolean compressTidlists;
+
+    // tid-lists of the first level in a file for a memory-mapped database
+    // (null otherwise)
+    private MappedTidLists firstLevel;
+
+    // items of a recoded database are written to the sink as the original 
+    // items (null if not recoded)
+    private boolean recode = true;
+    private ItemRecoding recoding;
+    private int nextDropped;
+    private int[] decoded = new int[16];
+
+    // sort the transactions for locality before mining
+    private boolean reorder = false;
+
+    // top-N mode and limits (0: not used)
+    private int topN = 0;
+    private int minlen = 1;     // only used to rank for top-N
+    private int maxPatterns = 0;
+    private double maxTime = 0;
+    private double maxMemory = 0;
+
+    // instrumentation (see MiningMetrics)
+    private boolean recordMetrics = false;
+    private MiningMetrics metrics;
 
-    private Hashtable repository = new Hashtable();
-    private HashSet nbFrequentIS = new HashSet();
-    private HashSet nbFrequentRules = new HashSet();
+    // stop early if a limit is reached (found counts the itemsets/rules)
+    private volatile boolean stopped;
+    private long deadline;
+    private int found;
+
+    // the used heap is checked every MEMORY_CHECK calls of stop (in bytes,
+    // 0: no limit), forced collections are at least MEMORY_GC seconds apart
+    private static final int MEMORY_CHECK = 1024;
+    private static final int MEMORY_GC = 10;
+    private long memoryLimit;
+    private int memoryChecks;
+    private long lastCollection;
+
+    // tidsets of the single items if bitsets are used
+    private TidBitset[] itemBitsets;
+    private double avgLength;
+
+    // projected tid-lists are pooled per depth of the DFS (the depth is the
+    // size of the itemset) so siblings reuse the lists of earlier siblings
+    private ScratchBuffers scratch;
+
+    // used by the parallel mode only (visits counts the itemsets in
+    // selections, access to both is synchronized on visits)
+    private SelectionStore selections;
+    private ItemsetTable visits;
+    private ThreadLocal<ScratchBuffers> threadScratch;
+    private Vector<Object[]> workers;
+
+    // counts of the candidates; the NB-frequent itemsets are marked
+    private ItemsetTable repository;
+    private long revisits;
+
+    // stored selections for incremental mining (null otherwise)
+    private StoredSelections incremental;
+
+    // the selections of all explored itemsets are recorded here with the
+    // original items (null otherwise)
+    private SelectionStore recorder;
 
     private boolean verbatim = false;  
     private boolean debug = false;  
     private NumberFormat nf = NumberFormat.getInstance();
     private PrintStream output;
 
-    // R interface
+    // R interface (threads: number of mining threads, 0 uses all cores)
     public R_result R_mine(
-            SparseSetOfItemsets db, 
+            SetOfItemsets db, 
+            double pi, double theta,
+            double a, double k, int n, int maxlen,
+            boolean rules, boolean verbatim, boolean debug, int threads){
+
+        if (threads < 1) threads = Runtime.getRuntime().availableProcessors();
+
+        // debug output is only meaningful in sequential order
+        if (debug) threads = 1;
+
+        this.threads = threads;
+        return R_mine(db, pi, theta, a, k, n, maxlen, rules, verbatim, debug);
+    }
+
+    // set AUTO, TIDLISTS, BITSETS, PROJECTED or COMPRESSED
+    public void setRepresentation(int representation) {
+        this.representation = representation;
+    }
+
+    // only return the n itemsets/rules with the highest precision (see
+    // TopNResultSink)
+    public void setTopN(int n) {
+        this.topN = n;
+    }
+
+    // the smallest itemsets/rules (lhs + rhs) ranked in top-N mode (1-itemsets
+    // are never ranked, see TopNResultSink)
+    public void setMinlen(int minlen) {
+        this.minlen = minlen;
+    }
+
+    // stop mining after n itemsets/rules are found
+    public void setMaxPatterns(int n) {
+        this.maxPatterns = n;
+    }
+
+    // stop mining after the given number of seconds
+    public void setMaxTime(double seconds) {
+        this.maxTime = seconds;
+    }
+
+    // stop mining if the heap in use after a garbage collection exceeds the
+    // given number of megabytes
+    public void setMaxMemory(double megabytes) {
+        this.maxMemory = megabytes;
+    }
+
+    // record metrics for the next runs (no overhead if off)
+    public void setMetrics(boolean recordMetrics) {
+        this.recordMetrics = recordMetrics;
+    }
+
+    // metrics of the last run (null if not recorded)
+    public MiningMetrics getMetrics() {
+        return metrics;
+    }
+
+    // mine incrementally using the stored selections (null to mine from
+    // scratch)
+    public void setIncremental(StoredSelections incremental) {
+        this.incremental = incremental;
+    }
+
+    // record the selections of the explored itemsets (e.g., for
+    // RuleGenerator; null to stop recording). Incremental runs only record
+    // the itemsets which are counted again.
+    public void setRecorder(SelectionStore recorder) {
+        this.recorder = recorder;
+    }
+
+    // drop the items which do not occur before mining (default: true)
+    public void setRecode(boolean recode) {
+        this.recode = recode;
+    }
+
+    // reorder the transactions before mining (see TransactionOrder;
+    // default: false)
+    public void setReorder(boolean reorder) {
+        this.reorder = reorder;
+    }
+
+    // false if the last run was stopped by a limit
+    public boolean isComplete() {
+        return !stopped;
+    }
+
+    public R_result R_mine(
+            SetOfItemsets db, 
             double pi, double theta,
             double a, double k, int n, int maxlen,
             boolean rules, boolean verbatim, boolean debug){
 
+        R_result result;
+        int items = db.items();
+
+        // mine the items which occur (debug output shows the codes)
+        if (recode && !debug && db instanceof SparseSetOfItemsets) {
+            recoding = new ItemRecoding(
+                    NBEstimator.itemFrequencies(db, threads));
+
+            if (recoding.dropped() > 0) {
+                if (verbatim) System.out.println(recoding.dropped() + 
+                        " of " + items + " items do not occur (recoded).");
+                db = recoding.recode(db);
+            }else{
+                recoding = null;
+            }
+        }
+
+        // the counts do not depend on the order of the transactions (a
+        // mapped database is not copied to the heap)
+        if (reorder && !debug && db instanceof SparseSetOfItemsets) {
+            db = new TransactionOrder(db,
+                    NBEstimator.itemFrequencies(db, threads)).reorder(db);
+            if (verbatim) System.out.println("Transactions reordered.");
+        }
+
+        try {
+            if (topN > 0) {
+                TopNResultSink sink = new TopNResultSink(topN, items, rules,
+                        minlen);
+                mine(db, pi, theta, a, k, n, maxlen, rules, verbatim, debug, 
+                        sink);
+                result = sink.getResult();
+            }else{
+                // the itemsets/rules go directly into the sparse R result
+                CSCResultSink sink = new CSCResultSink(items, rules);
+                mine(db, pi, theta, a, k, n, maxlen, rules, verbatim, debug, 
+                        sink);
+                result = sink.getResult();
+            }
+        }finally{
+            recoding = null;
+        }
+
+        result.setComplete(isComplete());
+        return result;
+    }
+
+    // mine and write the NB-frequent itemsets (or NB-precise rules) to sink
+    // as they are found
+    public void mine(
+            SetOfItemsets db, 
+            double pi, double theta,
+            double a, double k, int n, int maxlen,
+            boolean rules, boolean verbatim, boolean debug,
+            ResultSink sink){
+
+        prepare(db, pi, theta, a, k, n, maxlen, rules, verbatim, debug, sink);
+
+        // runs DFS algorithm
+        run();
+
+        this.sink = null;
+        dbI = null;
+        dbP = null;
+    }
+
+    // set the parameters for run (also used by the benchmarks)
+    void prepare(
+            SetOfItemsets db, 
+            double pi, double theta,
+            double a, double k, int n, int maxlen,
+            boolean rules, boolean verbatim, boolean debug,
+            ResultSink sink){
+
         // save global parameters
         this.db = db;
+        if (db instanceof SparseSetOfItemsets) {
+            dbI = ((SparseSetOfItemsets) db).backingI();
+            dbP = ((SparseSetOfItemsets) db).backingP();
+        }
         this.pi = pi;
         this.theta = theta;
         this.k = k;
@@ -60,26 +326,36 @@ public class NBMiner {
         this.rules = rules;
         this.verbatim = verbatim;
         this.debug = debug;
+        this.sink = sink;
+
+        repository = new ItemsetTable();
+        revisits = 0;
+        nextDropped = 0;
+        stopped = false;
+        found = 0;
+        if (maxTime > 0) deadline = System.nanoTime() + (long) (maxTime * 1e9);
+        else deadline = 0;
+        memoryLimit = (long) (maxMemory * 1024 * 1024);
+        memoryChecks = 0;
+        lastCollection = 0;
 
         // for output 
         output = System.out;
         nf.setMaximumFractionDigits(5);
         nf.setMinimumFractionDigits(5);
-
-        // runs DFS algorithm
-        run();
-
-        // make rules/itemsets sparse R results
-        if(rules) {
-            result = new R_result(nbFrequentRules, db.items(), true);
-        }else{
-            result = new R_result(nbFrequentIS, db.items(), false);
-        }
-        return result;
     }
     
     // run main algorithm
     public void run() {
+        long start = System.nanoTime();
+        long[] thread = {Thread.currentThread().getId()};
+        long allocated = 0;
+
+        metrics = null;
+        if (recordMetrics) {
+            metrics = new MiningMetrics();
+            allocated = -MiningMetrics.allocatedBytes(thread);
+        }
 
         if(verbatim) {
             output.println("Depth-first NB-frequent itemset miner "+
@@ -97,148 +373,1095 @@ public class NBMiner {
             output.println();
         }
 
-        // create a full list of transaction IDs
-        Vector lTidlist = new Vector(db.size());
-        for (int i = 0; i < db.size(); i++) lTidlist.add(new Integer(i));
+        avgLength = (double) db.incidences() / Math.max(db.size(), 1);
+
+        if (incremental != null) {
+            // replay the stored selections, only itemsets whose selection
+            // is missing or out of date are counted
+            if (verbatim) output.println("Updating stored selections.");
+
+            scratch = new ScratchBuffers(db.items(), db.size());
+            if (recordMetrics) scratch.setMetrics(new MiningMetrics());
+
+            update(new Itemset(), null, scratch);
+
+            if (recordMetrics) collectMetrics(scratch);
+            scratch = null;
+        }else{
+            allocated += search();
+        }
+
+        // the items at the end which do not occur
+        if (recoding != null) addDropped(recoding.getItems());
 
-        // create an empty set
-        Itemset l = new Itemset();
+        if (recordMetrics) {
+            allocated += MiningMetrics.allocatedBytes(thread);
+            if (allocated < 0) allocated = -1;
 
-        DFS(l, lTidlist); 
+            metrics.setRepository(repository.size(), repository.bytes(), 
+                    revisits);
+            metrics.setRun(System.nanoTime() - start, allocated, 
+                    sink.size(), threads);
+        }
         
+        if (verbatim && stopped)
+            output.println("Mining stopped early (limit reached).");
+
         if (verbatim) 
             if(rules)
-            output.println(nbFrequentRules.size() + 
+            output.println(sink.size() + 
                     " NB-precide rules found.");
             else
-            output.println(nbFrequentIS.size() + 
+            output.println(sink.size() + 
                     " NB-frequent itemsets found.");
+
+        if (verbatim && metrics != null) output.print(metrics);
+    }
+
+
+    // mine from scratch (sequential or parallel). Returns the bytes 
+    // allocated by worker threads if metrics are recorded.
+    private long search() {
+        long allocated = 0;
+
+        // create the tidset of the empty set (all transactions)
+        Tidset lTidset;
+        if (useBitsets()) {
+            if (verbatim) output.println("Using bitsets for dense data.");
+
+            createItemBitsets();
+            TidBitset all = new TidBitset(db.size());
+            for (int i = 0; i < db.size(); i++) all.set(i);
+            lTidset = all;
+        }else if (useCompressed()) {
+            if (verbatim) output.println("Using compressed tid-lists.");
+
+            compressTidlists = true;
+            CompressedTidList all = new CompressedTidList(db.size());
+            for (int i = 0; i < db.size(); i++) all.add(i);
+            lTidset = all;
+        }else if (db instanceof MappedSetOfItemsets) {
+            if (verbatim) output.println("Using tid-lists in a file.");
+
+            try {
+                firstLevel = new MappedTidLists(db, 
+                        NBEstimator.itemFrequencies(db, threads));
+            }catch(IOException e) {
+                throw new RuntimeException(e);
+            }
+            lTidset = firstLevel.getTidset(-1);
+        }else{
+            TidList all = new TidList(db.size());
+            for (int i = 0; i < db.size(); i++) all.add(i);
+            lTidset = all;
+        }
+
+        if (representation == PROJECTED) {
+            if (verbatim) output.println("Using projected databases.");
+
+            projectionBudget = (long) (PROJECTED_MEMORY * 
+                    Runtime.getRuntime().maxMemory() / 4 / threads);
+        }
+
+        try {
+            if (threads > 1) {
+                if (verbatim) output.println("Using " + threads + 
+                        " threads.");
+
+                allocated = runParallel(lTidset);
+            }else{
+                scratch = new ScratchBuffers(db.items(), db.size());
+                if (recordMetrics) scratch.setMetrics(new MiningMetrics());
+
+                // create an empty set
+                Itemset l = new Itemset();
+
+                DFS(l, lTidset); 
+
+                if (recordMetrics) collectMetrics(scratch);
+                scratch = null;
+            }
+        }finally{
+            if (firstLevel != null) firstLevel.close();
+            firstLevel = null;
+        }
+        itemBitsets = null;
+        compressTidlists = false;
+
+        return allocated;
     }
 
 
-    // main recursive part of the algorithm
-    public void DFS(Itemset l, Vector lTidlist) {
+    // main part of the algorithm: the DFS from l. It uses an explicit stack
+    // of frames (one per depth) instead of recursion, so deep search trees
+    // do not depend on the stack size of the thread. When a child is done,
+    // its tid-list is released from the counts of the parent (see
+    // Counts.release).
+    public void DFS(Itemset l, Tidset lTidset) {
+        FrameStack stack = new FrameStack();
+        stack.push(l, lTidset, -1);
+
+        while (!stack.isEmpty()) {
+            Frame f = stack.top();
+
+            // does not occur in any transaction (or mining is stopped)
+            if ((f.cs == null && !expand(f, scratch)) || 
+                    f.next == f.cs.size()) {
+                stack.pop();
+                if (!stack.isEmpty() && !backtrack()) return;
+                continue;
+            }
+
+            int i = f.next++;
+            int item = f.cs.getItem(i);
+
+            // the Itemset is only created if it is extended
+            if (addCandidate(f.l, item, f.cs.getPrecision(i), scratch)) {
+                Itemset lNew = new Itemset(f.l, item, f.cs.getPrecision(i));
+                Tidset cTidset = childTidset(f.l, f.tidset, f.counts, item, 
+                        scratch);
+                stack.push(lNew, cTidset, -1);
+                continue;
+            }
+
+            f.release(item);
+            if (!backtrack()) return;
+        }
+    }
+
+    // count and select the candidates of the itemset of a new frame (false
+    // if it does not occur or mining is stopped). In the parallel mode the
+    // selection is stored for the replay.
+    private boolean expand(Frame f, ScratchBuffers s) {
+        Itemset l = f.l;
+        Tidset lTidset = f.tidset;
 
         if (debug) 
         output.println("# Doing DFS for " + l);
 
-        if(lTidlist == null) {
+        if(lTidset == null || lTidset.isEmpty()) {
             if (debug) output.println("Warning: " + l + 
                     " does not occur in any transaction - dropped!");
 
-            return;
+            return false;
+        }
+
+        if (stop()) return false;
+
+        MiningMetrics m = s.getMetrics();
+        long start = 0;
+        if (m != null) start = System.nanoTime();
+
+        Counts counts = count(l, lTidset, s);
+
+        long counted = 0;
+        if (m != null) counted = System.nanoTime();
+
+        Selection cs = select(l, counts, s);
+
+        if (m != null) m.node(l.size(), lTidset.size(), counts.touched(), 
+                cs.size(), counted - start, System.nanoTime() - counted);
+        if (selections != null) {
+            if (!l.isEmpty()) setSelection(f.id, cs);
+        }else if (rules) {
+            addRules(l, cs);
+        }
+
+        f.counts = counts;
+        f.cs = cs;
+        return true;
+    }
+
+    // after a candidate of the frame on top of the stack (false if mining
+    // is stopped)
+    private boolean backtrack() {
+        if (stop()) return false;
+
+        if (debug)
+            output.println("Backtracking...");
+        return true;
+    }
+
+    // a node of the DFS on the stack: the itemset (and its id in visits for
+    // the parallel mode), its tidset, counts and selection and the next 
+    // candidate to extend
+    private static class Frame {
+        Itemset l;
+        int id;
+        Tidset tidset;
+        Counts counts;
+        Selection cs;
+        int next;
+
+        void set(Itemset l, Tidset tidset, int id) {
+            this.l = l;
+            this.tidset = tidset;
+            this.id = id;
+            counts = null;
+            cs = null;
+            next = 0;
+        }
+
+        // the DFS is done with the child l + {item}
+        void release(int item) {
+            if (counts != null) counts.release(item);
+        }
+    }
+
+    // the frames of the DFS (one per depth, they are reused)
+    private static class FrameStack {
+        private Frame[] frames = new Frame[16];
+        private int top = -1;
+
+        Frame push(Itemset l, Tidset tidset, int id) {
+            if (++top == frames.length) {
+                Frame[] newFrames = new Frame[frames.length * 2];
+                System.arraycopy(frames, 0, newFrames, 0, frames.length);
+                frames = newFrames;
+            }
+            if (frames[top] == null) frames[top] = new Frame();
+            frames[top].set(l, tidset, id);
+            return frames[top];
+        }
+
+        Frame top() {
+            return frames[top];
+        }
+
+        // remove the top frame and release its tid-list from the parent
+        void pop() {
+            // the tid-lists below a node stored in a file are not kept for
+            // its siblings (they would add up to all first-level lists)
+            Frame f = frames[top--];
+            if (f.counts != null && f.tidset instanceof MappedTidLists.Stored)
+                f.counts.releaseAll();
+            f.set(null, null, -1);
+            if (top >= 0) 
+                frames[top].release(frames[top].cs.getItem(
+                            frames[top].next - 1));
+        }
+
+        boolean isEmpty() {
+            return top < 0;
+        }
+    }
+
+
+    // count the items co-occurring with l in its tidset. With tid-lists, the
+    // tid-lists of the candidates are built as well, otherwise childTidset 
+    // creates the bitsets of the children.
+    private Counts count(Itemset l, Tidset lTidset, ScratchBuffers s) {
+        int depth = l.size();
+        Counts counts;
+
+        // tid-lists in a file: the counts of the empty set are the item 
+        // frequencies and the tid-list of an item is only on the heap while 
+        // it is counted
+        if (lTidset instanceof MappedTidLists.Stored) {
+            if (depth == 0) {
+                counts = s.getCounts(depth, false);
+                for (int item = 0; item < db.items(); item++) 
+                    counts.set(item, firstLevel.size(item));
+                return counts;
+            }
+
+            TidList lTidlist = new TidList(lTidset.size());
+            ((MappedTidLists.Stored) lTidset).load(lTidlist);
+            lTidset = lTidlist;
+        }
+
+        if (lTidset instanceof TidBitset) {
+            TidBitset lBitset = (TidBitset) lTidset;
+
+            if (lBitset.size() * avgLength * BITSET_SPARSE >= 
+                    (double) lBitset.range() * db.items()) {
+                counts = s.getCounts(depth, false);
+                countBitset(l, lBitset, counts);
+                return counts;
+            }
+
+            // sparse: continue with tid-lists for this subtree
+            TidList lTidlist = s.getCoverlist(depth);
+            lBitset.toTidList(lTidlist);
+            lTidset = lTidlist;
+        }
+
+        counts = s.getCounts(depth, true, compressTidlists);
+        if (lTidset instanceof ProjectedDB) 
+            countProjected((ProjectedDB) lTidset, counts);
+        else if (lTidset instanceof CompressedTidList) 
+            countCompressed(l, (CompressedTidList) lTidset, counts, 
+                    s.getMember());
+        else
+            countTidlist(l, (TidList) lTidset, counts, s.getMember());
+        return counts;
+    }
+
+    // tidset of l + {item}. For bitsets and projected databases the result
+    // is only valid until the next sibling's tidset is created.
+    private Tidset childTidset(Itemset l, Tidset lTidset, Counts counts, 
+            int item, ScratchBuffers s) {
+        int depth = l.size();
+
+        if (counts.isCompressed()) return counts.getCompressed(item);
+        if (firstLevel != null && depth == 0) 
+            return firstLevel.getTidset(item);
+
+        if (counts.hasTidlists()) {
+            // for projected databases the tid-lists of counts are indices
+            TidList cTidlist = counts.getTidlist(item);
+            if (representation == PROJECTED && depth > 0) 
+                return project(l, lTidset, cTidlist, item, s);
+
+            return cTidlist;
+        }
+
+        TidBitset cBitset = s.getBitset(depth+1);
+        cBitset.and((TidBitset) lTidset, itemBitsets[item]);
+        return cBitset;
+    }
+
+    // projected database of l + {item} (transactions cTidlist of lTidset)
+    // or its tid-list if the projections on the path of the DFS would take
+    // more than the memory budget
+    private Tidset project(Itemset l, Tidset lTidset, TidList cTidlist, 
+            int item, ScratchBuffers s) {
+        int depth = l.size();
+        if (cTidlist == null) return null;
+
+        ProjectedDB lProjection = null;
+        if (lTidset instanceof ProjectedDB) 
+            lProjection = (ProjectedDB) lTidset;
+
+        // ints needed for the projection (tids, p and the items)
+        long needed = 2 * cTidlist.size();
+        for (int t = 0; t < cTidlist.size(); t++) {
+            int tid = cTidlist.get(t);
+            if (lProjection != null) 
+                needed += lProjection.end(tid) - lProjection.start(tid) - 1;
+            else 
+                needed += db.end(tid) - db.start(tid) - depth - 1;
+        }
+
+        // the projection is also released for the budget of the siblings
+        ProjectedDB cProjection = s.getProjection(depth+1);
+
+        if (s.projected(depth+1) + needed > projectionBudget) {
+            if (lProjection == null) return cTidlist;
+
+            TidList tidlist = s.getCoverlist(depth+1);
+            for (int t = 0; t < cTidlist.size(); t++) 
+                tidlist.add(lProjection.getTid(cTidlist.get(t)));
+            return tidlist;
         }
 
+        cProjection.ensureCapacity((int) needed);
+        if (lProjection != null) {
+            for (int t = 0; t < cTidlist.size(); t++) {
+                int index = cTidlist.get(t);
+                cProjection.addTransaction(lProjection.getTid(index));
+
+                for (int pos = lProjection.start(index), 
+                        end = lProjection.end(index); pos < end; pos++) {
+                    int aItem = lProjection.item(pos);
+                    if (aItem != item) cProjection.add(aItem);
+                }
+            }
+        }else{
+            boolean[] member = s.getMember();
+            for (int i = 0; i < l.size(); i++) member[l.get(i)] = true;
+            member[item] = true;
+
+            for (int t = 0; t < cTidlist.size(); t++) {
+                int tid = cTidlist.get(t);
+                cProjection.addTransaction(tid);
 
-        Vector cs;	// candidate items as itemsets   
-        Itemset lNew;
-        Itemset transaction;
+                for (long pos = db.start(tid), end = db.end(tid); 
+                        pos < end; pos++) {
+                    int aItem = db.item(pos);
+                    if (!member[aItem]) cProjection.add(aItem);
+                }
+            }
+
+            for (int i = 0; i < l.size(); i++) member[l.get(i)] = false;
+            member[item] = false;
+        }
+
+        return cProjection;
+    }
+
+    // count the items in the projected database of l and build the 
+    // tid-lists (indices into the projection) for the candidates
+    private void countProjected(ProjectedDB lProjection, Counts counts) {
+        for (int t = 0; t < lProjection.size(); t++) 
+            for (int pos = lProjection.start(t), end = lProjection.end(t); 
+                    pos < end; pos++) 
+                counts.add(lProjection.item(pos), t);
+    }
+
+    // count the items co-occurring with l in the projected db given by
+    // lTidlist and build the tid-lists for the candidates
+    private void countTidlist(Itemset l, TidList lTidlist, Counts counts,
+            boolean[] member) {
         int tid;
         int aItem;
         int i;
 
-        int[] counter = new int[db.items()];
-        Vector[] cTidlists = new Vector[db.items()];
+        // mark the items in l (cheaper than l.contains)
+        for (i = 0; i < l.size(); i++) member[l.get(i)] = true;
 
-        // counting in projected db
-        for (int t = 0; t < lTidlist.size(); t++) {
-            tid = ((Integer) lTidlist.get(t)).intValue(); 
-            transaction = db.getItemset(tid);
+        // read the transactions in place (with int positions for databases
+        // on the heap, which is considerably faster)
+        if (dbI != null) {
+            for (int t = 0; t < lTidlist.size(); t++) {
+                tid = lTidlist.get(t); 
 
-            for (i = 0; i < transaction.size(); i++) {
-                aItem = transaction.get(i);
+                for (int pos = dbP[tid], end = dbP[tid+1]; pos < end; pos++) {
+                    aItem = dbI[pos];
+
+                    if(member[aItem]) continue;
+
+                    counts.add(aItem, tid);
+                }
+            }
+        }else{
+            for (int t = 0; t < lTidlist.size(); t++) {
+                tid = lTidlist.get(t); 
 
-                if(l.contains(aItem)) continue;
+                for (long pos = db.start(tid), end = db.end(tid); 
+                        pos < end; pos++) {
+                    aItem = db.item(pos);
 
-                counter[aItem]++;
+                    if(member[aItem]) continue;
 
-                // update cTidlists
-                if (cTidlists[aItem] == null) 
-                    cTidlists[aItem] = new Vector();
-                
-                cTidlists[aItem].add(new Integer(tid));
+                    counts.add(aItem, tid);
+                }
             }
         }
 
-        if (!l.isEmpty()) cs = NBSelect(counter,l);
-        else{
-            // initial run - all items are selected
-            cs = new Vector(db.items());
-            for (i = 0; i < db.items(); i++) 
-                cs.add(new Itemset(i));
-            if (debug) 
-                output.println("Added "+ cs.size()+ " items for initial run.");
+        for (i = 0; i < l.size(); i++) member[l.get(i)] = false;
+    }
+
+    // countTidlist for a compressed tid-list (the gaps are decoded while
+    // scanning, see CompressedTidList)
+    private void countCompressed(Itemset l, CompressedTidList lTidlist, 
+            Counts counts, boolean[] member) {
+        byte[] bytes = lTidlist.getBytes();
+        int length = lTidlist.length();
+        int tid = -1;
+        int b;
+        int gap;
+        int shift;
+        int aItem;
+        int i;
+
+        for (i = 0; i < l.size(); i++) member[l.get(i)] = true;
+
+        for (int bytePos = 0; bytePos < length; ) {
+            gap = 0;
+            shift = 0;
+            do {
+                b = bytes[bytePos++];
+                gap |= (b & 0x7f) << shift;
+                shift += 7;
+            }while (b < 0);
+            tid += gap;
+
+            if (dbI != null) {
+                for (int pos = dbP[tid], end = dbP[tid+1]; pos < end; pos++) {
+                    aItem = dbI[pos];
+                    if (!member[aItem]) counts.add(aItem, tid);
+                }
+            }else{
+                for (long pos = db.start(tid), end = db.end(tid); 
+                        pos < end; pos++) {
+                    aItem = db.item(pos);
+                    if (!member[aItem]) counts.add(aItem, tid);
+                }
+            }
+        }
+
+        for (i = 0; i < l.size(); i++) member[l.get(i)] = false;
+    }
+
+    // count the items co-occurring with l by intersecting bitsets
+    private void countBitset(Itemset l, TidBitset lBitset, Counts counts) {
+        for (int i = 0; i < counts.items(); i++) {
+            if(l.contains(i)) continue;
+
+            counts.set(i, lBitset.andCount(itemBitsets[i]));
+        }
+    }
+
+    // decide if bitsets are used (see AUTO)
+    private boolean useBitsets() {
+        if (representation != AUTO) return representation == BITSETS;
+
+        double cells = (double) db.size() * db.items();
+        if (cells == 0.0) return false;
+
+        double density = db.incidences() / cells;
+        double bytes = cells / 8;
+
+        return density >= BITSET_DENSITY && 
+            bytes <= BITSET_MEMORY * Runtime.getRuntime().maxMemory();
+    }
+
+    // decide if compressed tid-lists are used (see AUTO). The size of the
+    // compressed tid-lists is estimated from the item frequencies.
+    private boolean useCompressed() {
+        if (representation != AUTO) return representation == COMPRESSED;
+
+        // the tid-lists of a mapped database are kept in a file
+        if (db instanceof MappedSetOfItemsets) return false;
+
+        double plain = 4.0 * db.incidences();
+        if (plain <= COMPRESSED_MEMORY * Runtime.getRuntime().maxMemory()) 
+            return false;
+
+        int[] frequency = NBEstimator.itemFrequencies(db, threads);
+        double compressed = 0.0;
+        for (int item = 0; item < frequency.length; item++) 
+            compressed += (double) frequency[item] * 
+                CompressedTidList.bytesPerTid(frequency[item], db.size());
+
+        return compressed <= plain / 2;
+    }
+
+    private void createItemBitsets() {
+        itemBitsets = new TidBitset[db.items()];
+        for (int i = 0; i < db.items(); i++) 
+            itemBitsets[i] = new TidBitset(db.size());
+
+        for (int tid = 0; tid < db.size(); tid++) 
+            for (long pos = db.start(tid), end = db.end(tid); 
+                    pos < end; pos++) 
+                itemBitsets[db.item(pos)].set(tid);
+    }
+
+
+    // select the candidates for extending l 
+    private Selection select(Itemset l, Counts counts, ScratchBuffers s) {
+        if (!l.isEmpty()) {
+            Selection cs = NBSelect(counts, l, s);
+            if (recorder != null) record(l, cs);
+            return cs;
+        }
+
+        // initial run - all items are selected
+        int[] items = new int[db.items()];
+        double[] precision = new double[db.items()];
+        for (int i = 0; i < db.items(); i++) {
+            items[i] = i;
+            precision[i] = 1.0;
+        }
+        if (debug) 
+            output.println("Added "+ items.length + " items for initial run.");
+
+        return new Selection(items, precision);
+    }
+
+
+    // store the selection of l in the recorder (decoded, the explore
+    // threads of the parallel mode call this concurrently)
+    private void record(Itemset l, Selection cs) {
+        int[] key = new int[l.size()];
+        for (int j = 0; j < key.length; j++) key[j] = decode(l.get(j));
+
+        int[] items = new int[cs.size()];
+        double[] precision = new double[cs.size()];
+        double[] qualifying = new double[cs.size()];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = decode(cs.getItem(i));
+            precision[i] = cs.getPrecision(i);
+            if (cs.hasQualifying()) qualifying[i] = cs.getQualifying(i);
+        }
+
+        synchronized (recorder) {
+            recorder.set(recorder.getTable().add(key, key.length), 
+                    new Selection(items, precision, qualifying), db.size());
+        }
+    }
+
+
+    // create NB-precise rules l => {i} for the selected items
+    private void addRules(Itemset l, Selection cs) {
+        if (l.isEmpty()) return;
+
+        for (int i = 0; i < cs.size(); i++) {
+            if (stop()) return;
+
+            sink.addRule(decode(l.getItems(), l.size()), l.size(), 
+                    decode(cs.getItem(i)), cs.getPrecision(i));
+            found++;
+        }
+    }
+
+
+    // check the limits (once stopped, mining stays stopped)
+    private boolean stop() {
+        if (stopped) return true;
+
+        if ((maxPatterns > 0 && found >= maxPatterns) || 
+                (deadline != 0 && System.nanoTime() > deadline) ||
+                (memoryLimit != 0 && memoryExceeded())) 
+            stopped = true;
+
+        return stopped;
+    }
+
+    // the heap in use after the last garbage collection exceeds the limit
+    // (the counter is not synchronized since the check is approximate). If
+    // only the current heap (with garbage) exceeds the limit but no recent
+    // collection does, a collection is forced at most every MEMORY_GC 
+    // seconds.
+    private boolean memoryExceeded() {
+        if (++memoryChecks % MEMORY_CHECK != 0) return false;
+
+        Runtime runtime = Runtime.getRuntime();
+        if (runtime.totalMemory() - runtime.freeMemory() <= memoryLimit) 
+            return false;
+
+        if (collectedHeap() <= memoryLimit) {
+            long now = System.nanoTime();
+            if (lastCollection != 0 && 
+                    now - lastCollection < MEMORY_GC * 1000000000L) 
+                return false;
+
+            lastCollection = now;
+            System.gc();
+            if (collectedHeap() <= memoryLimit) return false;
+        }
+
+        if (verbatim) output.println("Memory limit of " + maxMemory + 
+                " MB exceeded.");
+        return true;
+    }
+
+    // bytes used by the heap pools after their last collection
+    private static long collectedHeap() {
+        long used = 0;
+        Iterator<MemoryPoolMXBean> pools = 
+            ManagementFactory.getMemoryPoolMXBeans().iterator();
+        while (pools.hasNext()) {
+            MemoryPoolMXBean pool = pools.next();
+            if (pool.getType() != MemoryType.HEAP) continue;
+
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage != null) used += usage.getUsed();
+        }
+        return used;
+    }
+
+
+    // count lNew = l + {item} in the repository and check if it is 
+    // NB-frequent and needs to be extended
+    private boolean addCandidate(Itemset l, int item, double precision,
+            ScratchBuffers s) {
+        // the items which do not occur come before item at the first level
+        if (recoding != null && l.isEmpty()) {
+            addDropped(recoding.getItem(item));
+            if (stop()) return false;
         }
 
-        for (i = 0; i < cs.size(); i++) {
-            lNew = (Itemset) cs.get(i);
+        int size = l.size() + 1;
+        int[] key = s.getKey(size);
+        l.extend(item, key);
+
+        int id = repository.add(key, size);
+        int theCount = repository.increment(id);
+        if (recordMetrics && repository.isMarked(id)) revisits++;
+
+        if (debug) 
+            output.println(new Itemset(l, item) + 
+                    " - count in repository: " + theCount);
 
-            Integer count = (Integer) repository.get(lNew);
-            int theCount;
-            if (count == null) theCount = 0;
-            else theCount = count.intValue();
 
-            theCount++; 
+        // fixme: average precision missing!
+        if (theCount >= theta*size && size <= maxlen &&
+                !repository.isMarked(id)) {
 
-            repository.put(lNew, new Integer(theCount));
+            repository.mark(id);
+            if (!rules) {
+                sink.addItemset(decode(key, size), size, precision);
+                found++;
+            }
 
             if (debug) 
-                output.println(lNew + " - count in repository: " + theCount);
-            
+                output.println(new Itemset(l, item) + " - is NB-frequent\n");
+
+            return true;
+        }
+
+        return false;
+    }
+
 
-            // fixme: average precision missing!
-            if (theCount >= theta*lNew.size() && lNew.size() <= maxlen &&
-                    !nbFrequentIS.contains(lNew)) {
+    // recoded database: the items before item which do not occur are 
+    // NB-frequent 1-itemsets (all items are selected for the empty set and
+    // are counted once), so they are added to the sink as for the original 
+    // database
+    private void addDropped(int item) {
+        for (; nextDropped < item; nextDropped++) {
+            if (recoding.getCode(nextDropped) >= 0) continue;
+            if (stop()) return;
+            if (rules || 1 < theta || maxlen < 1) continue;
 
-                nbFrequentIS.add(lNew);
+            decoded[0] = nextDropped;
+            sink.addItemset(decoded, 1, 1.0);
+            found++;
+        }
+    }
+
+    // the original items of codes
+    private int[] decode(int[] codes, int length) {
+        if (recoding == null) return codes;
+
+        if (decoded.length < length) 
+            decoded = new int[Math.max(length, decoded.length * 2)];
+        for (int j = 0; j < length; j++) 
+            decoded[j] = recoding.getItem(codes[j]);
+        return decoded;
+    }
+
+    private int decode(int code) {
+        if (recoding == null) return code;
+        return recoding.getItem(code);
+    }
+
+
+    // add the metrics recorded with s
+    private void collectMetrics(ScratchBuffers s) {
+        s.getMetrics().setTidlists(s.tidlistBytes());
+        ModelCache cache = s.getModelCache(k, a);
+        s.getMetrics().setModelCache(cache.getHits(), cache.getMisses());
+        metrics.add(s.getMetrics());
+    }
+
+
+    // parallel mode: explore the search tree with a fork/join pool and
+    // store the result of NBSelect for every visited itemset. Which itemsets
+    // are visited does not depend on the order in which the repository
+    // counts are increased, but the precision of an itemset comes from the
+    // parent which makes it NB-frequent. To get exactly the sequential
+    // result we therefore replay the sequential DFS on the stored
+    // selections afterwards (no counting is needed for the replay).
+    // Returns the bytes allocated by the worker threads if metrics are
+    // recorded.
+    private long runParallel(Tidset lTidset) {
+        long allocated = 0;
 
-                if (debug) 
-                    output.println(lNew + " - is NB-frequent\n");
+        selections = new SelectionStore();
+        visits = selections.getTable();
+        workers = new Vector<Object[]>();
+        threadScratch = new ThreadLocal<ScratchBuffers>() {
+            protected ScratchBuffers initialValue() {
+                ScratchBuffers s = new ScratchBuffers(db.items(), db.size());
+                if (recordMetrics) {
+                    s.setMetrics(new MiningMetrics());
+                    workers.add(new Object[] {s, 
+                        new Long(Thread.currentThread().getId())});
+                }
+                return s;
+            }
+        };
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new ExploreTask(null, new Itemset(), -1, lTidset));
 
-                DFS(lNew, cTidlists[lNew.getCurrentItem()]);
+            if (recordMetrics) {
+                long[] ids = new long[workers.size()];
+                for (int w = 0; w < workers.size(); w++) {
+                    Object[] worker = workers.get(w);
+                    collectMetrics((ScratchBuffers) worker[0]);
+                    ids[w] = ((Long) worker[1]).longValue();
+                }
+                allocated = MiningMetrics.allocatedBytes(ids);
             }
-            
-            if (debug)
-                output.println("Backtracking...");
+        }finally{
+            pool.shutdown();
+        }
+
+        threadScratch = null;
+        workers = null;
+
+        // the replay gets the stored selections of a stopped exploration and
+        // is only limited by maxPatterns
+        boolean explored = !stopped;
+        stopped = false;
+        found = 0;
+        deadline = 0;
+        memoryLimit = 0;
+
+        replay(new Itemset(), -1, new ScratchBuffers(db.items(), db.size()));
+        visits = null;
+        selections = null;
+
+        if (!explored) stopped = true;
+
+        return allocated;
+    }
+
+    private class ExploreTask extends CountedCompleter<Void> {
+        private static final long serialVersionUID = 1L;
+
+        private Itemset l;
+        private int id;
+        private Tidset lTidset;
+
+        ExploreTask(CountedCompleter<?> parent, Itemset l, int id, 
+                Tidset lTidset) {
+            super(parent);
+            this.l = l;
+            this.id = id;
+            this.lTidset = lTidset;
+        }
+
+        public void compute() {
+            explore(this, l, id, lTidset);
+            tryComplete();
+        }
+    }
+
+    // the parallel counterpart of DFS. Subtrees of first-level items are
+    // always forked, deeper subtrees only if the worker has no queued work
+    // (otherwise they are explored on the stack of the task). A task never
+    // waits for its subtasks, so the ScratchBuffers of a worker thread are
+    // only used by one task at a time.
+    private void explore(ExploreTask task, Itemset l, int id, 
+            Tidset lTidset) {
+        ScratchBuffers s = threadScratch.get();
+        FrameStack stack = new FrameStack();
+        stack.push(l, lTidset, id);
+
+        while (!stack.isEmpty()) {
+            Frame f = stack.top();
+
+            if ((f.cs == null && !expand(f, s)) || f.next == f.cs.size()) {
+                stack.pop();
+                if (stop()) return;
+                continue;
+            }
+
+            int item = f.cs.getItem(f.next++);
+            int cId = visit(f.l, item, s);
+            if (cId < 0) {
+                f.release(item);
+                continue;
+            }
+
+            Itemset lNew = new Itemset(f.l, item, 
+                    f.cs.getPrecision(f.next - 1));
+            Tidset cTidset = childTidset(f.l, f.tidset, f.counts, item, s);
+            if (f.l.isEmpty() || 
+                    ForkJoinTask.getSurplusQueuedTaskCount() < 2) {
+                // the pooled tidset is reused by the next sibling 
+                if (cTidset != null) cTidset = cTidset.copy();
+                task.addToPendingCount(1);
+                new ExploreTask(task, lNew, cId, cTidset).fork();
+                f.release(item);
+                if (stop()) return;
+            }else{
+                stack.push(lNew, cTidset, cId);
+            }
+        }
+    }
+
+    // thread-safe repository count for the parallel mode. Exactly one
+    // thread sees the count at which l + {item} becomes NB-frequent; it gets
+    // the id of the itemset in visits, all others get -1.
+    private int visit(Itemset l, int item, ScratchBuffers s) {
+        int size = l.size() + 1;
+        if (size > maxlen) return -1;
+
+        int[] key = s.getKey(size);
+        l.extend(item, key);
+
+        int needed = (int) Math.ceil(theta*size);
+        if (needed < 1) needed = 1;
+
+        synchronized (visits) {
+            int id = visits.add(key, size);
+            if (visits.increment(id) == needed) {
+                if (!rules) found++;
+                return id;
+            }
+        }
+        return -1;
+    }
+
+    private void setSelection(int id, Selection cs) {
+        synchronized (visits) {
+            selections.set(id, cs, db.size());
+        }
+    }
+
+    // sequential DFS using the selections stored by explore (id is the id of
+    // l in visits). As DFS, it uses an explicit stack instead of recursion.
+    private void replay(Itemset l, int id, ScratchBuffers s) {
+        Itemset[] itemsets = new Itemset[16];
+        Selection[] candidates = new Selection[16];
+        int[] next = new int[16];
+        int top = 0;
+
+        itemsets[0] = l;
+        if (l.isEmpty()) candidates[0] = select(l, null, null);
+        else candidates[0] = selections.get(id);
+        next[0] = 0;
+
+        // does not occur in any transaction
+        if (candidates[0] == null) return;
+        if (rules) addRules(l, candidates[0]);
+
+        while (top >= 0) {
+            Selection cs = candidates[top];
+            if (next[top] == cs.size()) {
+                itemsets[top] = null;
+                candidates[top] = null;
+                top--;
+                continue;
+            }
+
+            int i = next[top]++;
+            int item = cs.getItem(i);
+            if (stop()) return;
+            if (!addCandidate(itemsets[top], item, cs.getPrecision(i), s)) 
+                continue;
+
+            Itemset lNew = new Itemset(itemsets[top], item, 
+                    cs.getPrecision(i));
+            Selection cNew = selections.get(visits.find(lNew));
+            if (cNew == null) continue;
+            if (rules) addRules(lNew, cNew);
+
+            if (++top == itemsets.length) {
+                Itemset[] newItemsets = new Itemset[top * 2];
+                System.arraycopy(itemsets, 0, newItemsets, 0, top);
+                itemsets = newItemsets;
+                Selection[] newCandidates = new Selection[top * 2];
+                System.arraycopy(candidates, 0, newCandidates, 0, top);
+                candidates = newCandidates;
+                int[] newNext = new int[top * 2];
+                System.arraycopy(next, 0, newNext, 0, top);
+                next = newNext;
+            }
+            itemsets[top] = lNew;
+            candidates[top] = cNew;
+            next[top] = 0;
+        }
+    }
+
+
+    // incremental mode: the DFS using the selections stored by earlier runs.
+    // Only itemsets without an up-to-date selection are counted. Their
+    // tidsets come from the counts of the parent if it was counted as well
+    // and otherwise from the tid-lists of the items (lTidlist is null). As 
+    // DFS, it uses an explicit stack instead of recursion.
+    private void update(Itemset l, TidList lTidlist, ScratchBuffers s) {
+        FrameStack stack = new FrameStack();
+        stack.push(l, lTidlist, -1);
+
+        while (!stack.isEmpty()) {
+            Frame f = stack.top();
+
+            if ((f.cs == null && !updateSelection(f, s)) || 
+                    f.next == f.cs.size()) {
+                stack.pop();
+                continue;
+            }
+
+            int i = f.next++;
+            int item = f.cs.getItem(i);
+            if (stop()) return;
+            if (!addCandidate(f.l, item, f.cs.getPrecision(i), s)) {
+                f.release(item);
+                continue;
+            }
+
+            TidList cTidlist = null;
+            if (f.counts != null) cTidlist = f.counts.getTidlist(item);
+            stack.push(new Itemset(f.l, item, f.cs.getPrecision(i)), 
+                    cTidlist, -1);
+        }
+    }
+
+    // the stored selection of the itemset of a new frame or count it if 
+    // the selection is missing or out of date (false if it does not occur)
+    private boolean updateSelection(Frame f, ScratchBuffers s) {
+        Itemset l = f.l;
+        Selection cs;
+        if (l.isEmpty()) cs = select(l, null, null);
+        else cs = incremental.getSelection(l);
+
+        if (cs == null) {
+            TidList lTidlist = (TidList) f.tidset;
+            if (lTidlist == null) {
+                lTidlist = s.getCoverlist(l.size());
+                incremental.tidset(l, lTidlist);
+            }
+
+            if (lTidlist.isEmpty()) {
+                incremental.setSelection(l, Selection.EMPTY);
+                return false;
+            }
+
+            MiningMetrics m = s.getMetrics();
+            long start = 0;
+            if (m != null) start = System.nanoTime();
+
+            f.counts = count(l, lTidlist, s);
+
+            long counted = 0;
+            if (m != null) counted = System.nanoTime();
+
+            cs = select(l, f.counts, s);
+
+            if (m != null) m.node(l.size(), lTidlist.size(), 
+                    f.counts.touched(), cs.size(), counted - start, 
+                    System.nanoTime() - counted);
+            incremental.setSelection(l, cs);
         }
+
+        if (rules) addRules(l, cs);
+
+        f.cs = cs;
+        return true;
     }
 
 
     // NB Select
-    public Vector NBSelect(int[] counter, Itemset l) {
+    // only the touched items of counts are visited, the others have a count
+    // of 0
+    public Selection NBSelect(Counts counts, Itemset l, ScratchBuffers s) {
         int[] nObs;
-        double[] nModel;
+        ModelCache models = s.getModelCache(k, a);
+        int model;      // entry in the model cache
 
         int rMax = 0;
         int rRescale = 0;
         double aRescaled;
         int nRescaled = n-l.size();
         int i;
+        int count;
 
 
         // find rMax and rRescale
-        for (i=0; i<counter.length; i++) {
-            if(rMax < counter[i]) rMax=counter[i]; 
-            rRescale += counter[i];
+        for (i=0; i<counts.touched(); i++) {
+            count = counts.get(counts.getTouched(i));
+            if(rMax < count) rMax=count; 
+            rRescale += count;
         }
 
         // create frequency table
-        nObs = new int[rMax+1];
-        for (i=0; i<counter.length; i++) nObs[counter[i]]++;
+        nObs = s.getObs(rMax+1);
+        nObs[0] = counts.items() - counts.touched();
+        for (i=0; i<counts.touched(); i++) 
+            nObs[counts.get(counts.getTouched(i))]++;
 
-        // calculate theoretic frequencies
+        // calculate theoretic frequencies (the tables are cached)
         aRescaled = a * rRescale;
-
-        nModel = new double[rMax+1];
-        nModel[rMax] = (double) nRescaled;
-
-        nModel[0] = nRescaled * Math.pow(1+aRescaled,-1*k);
-        nModel[rMax] -= nModel[0];
-
-        for (int r=0; r<(rMax-1); r++) {
-            nModel[r+1] = (k+r)/(r+1) * aRescaled/(1+aRescaled) * nModel[r];
-            nModel[rMax] -= nModel[r+1];
-        }
+        model = models.lookup(rRescale, nRescaled, rMax);
 
         if (debug) {
             output.println("NBSelect for l=" + l);
@@ -254,18 +1477,17 @@ public class NBMiner {
         int rho = rMax;
         int sumObs = 0;
         double sumModel = 0.0;
-        double[] precision = new double[rMax+1];
-        Itemset tmpIS; 
+        double[] precision = s.getPrecision(rMax+1);
 
         do{
             sumObs += nObs[rho];
-            sumModel += nModel[rho];
+            sumModel += models.get(model, rho, rMax);
 
             precision[rho] = 1 - sumModel / sumObs;
 
             if (debug) 
                 output.println("\t" + rho + "\t" + nObs[rho] + "\t" + 
-                        nf.format(nModel[rho]) + 
+                        nf.format(models.get(model, rho, rMax)) + 
                         "\t" + 
                         nf.format(precision[rho])
                         );
@@ -278,23 +1500,40 @@ public class NBMiner {
             if (debug)
                 output.println("-> not enough co-occurrences (rMax < 2)!\n"); 
             
-            return new Vector(0); 
+            return Selection.EMPTY; 
         }
 
-        Vector cs = new Vector(sumObs-nObs[rho]);   // selected items 
-                                                    // as itemsets (marked)
-        for (i=0; i<counter.length; i++) 
-            if (counter[i] > rho) { 
-                
-                // create NB-frequent itemset candidate
-                cs.add(new Itemset(l, i, precision[counter[i]]));
+        int selected = 0;
+        for (i=0; i<counts.touched(); i++) 
+            if (counts.get(counts.getTouched(i)) > rho) selected++;
 
-                // create NB-frequent rule
-                if(rules) {
-                    nbFrequentRules.add(new 
-                            Rule(l, new Itemset(i), precision[counter[i]]));
-                }
-            }
+        // selected items (NB-frequent itemset candidates) in increasing 
+        // order
+        int[] csItems = new int[selected];
+        double[] csPrecision = new double[selected];
+        selected = 0;
+        for (i=0; i<counts.touched(); i++) 
+            if (counts.get(counts.getTouched(i)) > rho)  
+                csItems[selected++] = counts.getTouched(i);
+
+        Arrays.sort(csItems);
+        for (i=0; i<csItems.length; i++) 
+            csPrecision[i] = precision[counts.get(csItems[i])];
+
+        Selection cs;
+        if (recorder == null) {
+            cs = new Selection(csItems, csPrecision);
+        }else{
+            // an item with count r is selected as long as the precision 
+            // of all levels r..rMax reaches pi
+            for (i=rMax-1; i>rho; i--) 
+                precision[i] = Math.min(precision[i], precision[i+1]);
+
+            double[] csQualifying = new double[csItems.length];
+            for (i=0; i<csItems.length; i++) 
+                csQualifying[i] = precision[counts.get(csItems[i])];
+            cs = new Selection(csItems, csPrecision, csQualifying);
+        }
 
         if (debug){ 
             output.print("-> found " + cs.size() + 
@@ -302,8 +1541,7 @@ public class NBMiner {
                     ": C={");
             
             for(i=0; i < cs.size(); i++){
-                tmpIS = (Itemset) cs.get(i);
-                output.print(tmpIS.getCurrentItem() + ", ");
+                output.print(cs.getItem(i) + ", ");
             }
 
             output.println("\b\b}"); 
@@ -0,0 +1,140 @@
+/*
+ * Mining with several settings of pi, theta and maxlen in one pass over
+ * the data. The DFS counts the projected databases once for the loosest
+ * setting (smallest pi and theta, largest maxlen) and records the
+ * selections together with the largest pi for which each item is still
+ * selected. Every setting is then mined by replaying the DFS on the
+ * recorded selections (as in IncrementalNBMiner) without counting. A
+ * tighter setting only explores itemsets which the loosest setting
+ * explores, so the results are the same as mining each setting separately.
+ *
+ * The NB model parameters (a, k, n) and rules are the same for all
+ * settings.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class ParameterSweep implements StoredSelections {
+
+    private SetOfItemsets db;
+    private double a;
+    private double k;
+    private int n;
+    private boolean rules;
+
+    private NBMiner miner = new NBMiner();
+
+    // selections recorded for the loosest setting
+    private SelectionStore selections;
+
+    // pi of the setting which is replayed
+    private double pi;
+
+    public ParameterSweep(SetOfItemsets db, double a, double k, int n,
+            boolean rules) {
+        this.db = db;
+        this.a = a;
+        this.k = k;
+        this.n = n;
+        this.rules = rules;
+    }
+
+    // mine the settings pi[s], theta[s], maxlen[s] (the limits and metrics
+    // of getMiner() are not used for the loosest setting)
+    public R_result[] R_mine(double[] pi, double[] theta, int[] maxlen,
+            boolean verbatim) {
+        if (pi.length != theta.length || pi.length != maxlen.length)
+            throw new IllegalArgumentException(
+                    "pi, theta and maxlen need the same length");
+
+        R_result[] results = new R_result[pi.length];
+        if (pi.length == 0) return results;
+
+        double minPi = pi[0];
+        double minTheta = theta[0];
+        int maxMaxlen = maxlen[0];
+        for (int s = 1; s < pi.length; s++) {
+            minPi = Math.min(minPi, pi[s]);
+            minTheta = Math.min(minTheta, theta[s]);
+            maxMaxlen = Math.max(maxMaxlen, maxlen[s]);
+        }
+
+        // count once for the loosest setting
+        if (verbatim) System.out.println("Recording selections for pi = " +
+                minPi + ", theta = " + minTheta + ", maxlen = " + maxMaxlen);
+
+        selections = new SelectionStore();
+        NBMiner recording = new NBMiner();
+        recording.setRecorder(selections);
+        recording.mine(db, minPi, minTheta, a, k, n, maxMaxlen, rules,
+                false, false, new CSCResultSink(db.items(), rules));
+
+        // replay for every setting
+        miner.setIncremental(this);
+        try {
+            for (int s = 0; s < pi.length; s++) {
+                this.pi = pi[s];
+
+                CSCResultSink sink = new CSCResultSink(db.items(), rules);
+                miner.mine(db, pi[s], theta[s], a, k, n, maxlen[s], rules,
+                        verbatim, false, sink);
+
+                results[s] = sink.getResult();
+                results[s].setComplete(miner.isComplete());
+            }
+        }finally{
+            miner.setIncremental(null);
+        }
+
+        return results;
+    }
+
+    public NBMiner getMiner() {
+        return miner;
+    }
+
+    // number of recorded selections
+    public int getStored() {
+        return selections == null ? 0 : selections.size();
+    }
+
+
+    // the recorded selection for the current pi (itemsets which do not
+    // occur are not recorded)
+    public Selection getSelection(Itemset l) {
+        Selection cs = selections.get(selections.getTable().find(l));
+        if (cs == null) return Selection.EMPTY;
+        return cs.select(pi);
+    }
+
+    public void setSelection(Itemset l, Selection cs) {
+    }
+
+    // getSelection always returns a selection, so nothing is counted
+    public void tidset(Itemset l, TidList target) {
+        throw new IllegalStateException(l + " was not recorded");
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        int[] i = {0,1,2, 0,1, 1,2, 0,1,2, 0,2, 0,1,2};
+        int[] p = {0, 3, 5, 7, 10, 12, 15};
+        SparseSetOfItemsets db = new SparseSetOfItemsets(i, p, 3);
+
+        double[] pi = {0.5, 0.6, 0.5, 0.5};
+        double[] theta = {0.5, 0.5, 1.0, 0.5};
+        int[] maxlen = {3, 3, 3, 2};
+
+        R_result[] results = new ParameterSweep(db, 1.0, 1.0, 6, false)
+            .R_mine(pi, theta, maxlen, false);
+
+        for (int s = 0; s < results.length; s++) {
+            R_result single = new NBMiner().R_mine(db, pi[s], theta[s],
+                    1.0, 1.0, 6, maxlen[s], false, false, false);
+            System.out.println("pi = " + pi[s] + ", theta = " + theta[s] +
+                    ", maxlen = " + maxlen[s] + ": " +
+                    results[s].getPrecision().length + " itemsets (" +
+                    single.getPrecision().length + " mined separately)");
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * A shard of a transaction database for partitioned mining (see
+ * PartitionedNBMiner): the transactions from..to-1 with per-item tid-lists.
+ * For an itemset l the worker counts the items (except the items of l) in
+ * the transactions of the shard which contain l. The coordinator merges
+ * the counts of all shards.
+ *
+ * A worker runs in a thread of the coordinator or as a separate process
+ * on the same machine which maps its range of a database file (see
+ * MappedSetOfItemsets) and talks to the coordinator through a local socket
+ * (big endian ints):
+ *
+ *   request:  length, items of l (length -1 stops the worker)
+ *   response: touched, touched pairs of item and count
+ *
+ * usage: java PartitionWorker file from to port
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+public class PartitionWorker {
+
+    private SetOfItemsets db;
+    private TidList[] tidlists;
+    private int from;
+    private int to;
+
+    // result of the last count
+    private int[] counter;
+    private int[] touched;
+    private int nTouched;
+    private boolean[] member;
+
+    private TidList tidset = new TidList();
+    private int[] key = new int[16];
+    private int[] cursor = new int[16];
+
+    public PartitionWorker(SetOfItemsets db, int from, int to) {
+        this.db = db;
+        this.from = from;
+        this.to = to;
+
+        int items = db.items();
+        counter = new int[items];
+        touched = new int[items];
+        member = new boolean[items];
+
+        tidlists = new TidList[items];
+        for (int item = 0; item < items; item++)
+            tidlists[item] = new TidList();
+        for (int tid = from; tid < to; tid++)
+            for (long pos = db.start(tid), end = db.end(tid); pos < end;
+                    pos++)
+                tidlists[db.item(pos)].add(tid);
+    }
+
+    // count the items co-occurring with l[0..length-1] (l is not empty) and
+    // return the number of touched items (see getTouched and getCount)
+    public int count(int[] l, int length) {
+        for (int i = 0; i < nTouched; i++) counter[touched[i]] = 0;
+        nTouched = 0;
+
+        if (cursor.length < length) cursor = new int[length * 2];
+        tidset.clear();
+        TidList.intersect(tidlists, l, length, cursor, from, to, tidset);
+
+        for (int i = 0; i < length; i++) member[l[i]] = true;
+
+        for (int t = 0; t < tidset.size(); t++) {
+            int tid = tidset.get(t);
+            for (long pos = db.start(tid), end = db.end(tid); pos < end;
+                    pos++) {
+                int item = db.item(pos);
+                if (member[item]) continue;
+                if (counter[item]++ == 0) touched[nTouched++] = item;
+            }
+        }
+
+        for (int i = 0; i < length; i++) member[l[i]] = false;
+
+        return nTouched;
+    }
+
+    // number of touched items of the last count
+    public int touched() {
+        return nTouched;
+    }
+
+    public int getTouched(int index) {
+        return touched[index];
+    }
+
+    public int getCount(int item) {
+        return counter[item];
+    }
+
+    public int size() {
+        return to - from;
+    }
+
+    // answer the requests of a coordinator until it sends -1
+    public void serve(DataInputStream in, DataOutputStream out)
+        throws IOException {
+        while (true) {
+            int length = in.readInt();
+            if (length < 0) return;
+
+            if (key.length < length) key = new int[length * 2];
+            for (int j = 0; j < length; j++) key[j] = in.readInt();
+
+            int n = count(key, length);
+            out.writeInt(n);
+            for (int i = 0; i < n; i++) {
+                out.writeInt(touched[i]);
+                out.writeInt(counter[touched[i]]);
+            }
+            out.flush();
+        }
+    }
+
+    // worker process
+    public static void main(String[] arg) throws IOException {
+        if (arg.length != 4) {
+            System.err.println(
+                    "usage: java PartitionWorker file from to port");
+            System.exit(1);
+        }
+
+        MappedSetOfItemsets db = new MappedSetOfItemsets(arg[0]);
+        PartitionWorker worker = new PartitionWorker(db,
+                Integer.parseInt(arg[1]), Integer.parseInt(arg[2]));
+
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                Integer.parseInt(arg[3]));
+        try {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(socket.getOutputStream()));
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(socket.getInputStream()));
+
+            // the coordinator identifies the worker by its range
+            out.writeInt(worker.from);
+            out.flush();
+            worker.serve(in, out);
+        }finally{
+            socket.close();
+        }
+    }
+}
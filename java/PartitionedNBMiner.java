@@ -0,0 +1,335 @@
+/*
+ * Partitioned mining: the database is split by transaction ranges into
+ * shards (see PartitionWorker) which run in threads or in separate worker
+ * processes on the same machine. The coordinator runs the DFS of NBMiner
+ * (through StoredSelections, as for incremental mining): for every
+ * itemset it sends l to all shards, merges their co-occurrence counts and
+ * runs NBSelect on the global counts. Only the counts travel between the
+ * coordinator and the shards, so a worker process only needs its part of
+ * the database (plus its tid-lists). The result is the same as mining
+ * the database in one piece.
+ *
+ * Worker processes map a database file created with NBMinerDB and are
+ * started with the given class path (which has to contain this jar; by
+ * default the class path of the coordinator JVM).
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+public class PartitionedNBMiner implements StoredSelections {
+
+    // seconds to wait for the worker processes to connect and to exit
+    private static final int CONNECT_TIMEOUT = 60;
+    private static final int EXIT_TIMEOUT = 10;
+
+    private SetOfItemsets db;
+    private NBMiner miner = new NBMiner();
+
+    // shards in threads
+    private PartitionWorker[] workers;
+    private ExecutorService pool;
+    private Future<?>[] pending;
+
+    // shards in processes
+    private Process[] processes;
+    private Socket[] sockets;
+    private DataInputStream[] in;
+    private DataOutputStream[] out;
+
+    // merged counts and buffers for NBSelect
+    private Counts counts;
+    private ScratchBuffers scratch;
+    private int[] key = new int[16];
+
+    // shards in threads of this JVM
+    public PartitionedNBMiner(SetOfItemsets db, int partitions) {
+        this.db = db;
+        partitions = partitions(partitions);
+
+        workers = new PartitionWorker[partitions];
+        for (int w = 0; w < partitions; w++)
+            workers[w] = new PartitionWorker(db, from(w, partitions),
+                    from(w+1, partitions));
+
+        pool = Executors.newFixedThreadPool(partitions);
+        pending = new Future<?>[partitions];
+        init();
+    }
+
+    // shards in worker processes which map the database file (created
+    // with NBMinerDB), started with classPath (null: the class path of this
+    // JVM)
+    public PartitionedNBMiner(String file, int partitions, String classPath)
+        throws IOException {
+        this.db = new MappedSetOfItemsets(file);
+        partitions = partitions(partitions);
+        if (classPath == null)
+            classPath = System.getProperty("java.class.path");
+
+        String java = System.getProperty("java.home") + File.separator +
+            "bin" + File.separator + "java";
+
+        processes = new Process[partitions];
+        sockets = new Socket[partitions];
+        in = new DataInputStream[partitions];
+        out = new DataOutputStream[partitions];
+
+        ServerSocket server = new ServerSocket(0, partitions,
+                InetAddress.getLoopbackAddress());
+        try {
+            server.setSoTimeout(CONNECT_TIMEOUT * 1000);
+
+            for (int w = 0; w < partitions; w++) {
+                ProcessBuilder builder = new ProcessBuilder(new String[] {
+                    java, "-cp", classPath, "PartitionWorker", file,
+                    String.valueOf(from(w, partitions)),
+                    String.valueOf(from(w+1, partitions)),
+                    String.valueOf(server.getLocalPort())});
+                builder.redirectErrorStream(true);
+                builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+                processes[w] = builder.start();
+            }
+
+            // workers connect in any order and send the start of their
+            // range
+            for (int c = 0; c < partitions; c++) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                DataInputStream socketIn = new DataInputStream(
+                        new BufferedInputStream(socket.getInputStream()));
+
+                int start = socketIn.readInt();
+                int w = 0;
+                while (from(w, partitions) != start ||
+                        sockets[w] != null) w++;
+
+                sockets[w] = socket;
+                in[w] = socketIn;
+                out[w] = new DataOutputStream(
+                        new BufferedOutputStream(socket.getOutputStream()));
+            }
+        }catch(IOException e) {
+            close();
+            throw e;
+        }finally{
+            server.close();
+        }
+
+        init();
+    }
+
+    public R_result R_mine(double pi, double theta, double a, double k,
+            int n, int maxlen, boolean rules, boolean verbatim) {
+        CSCResultSink sink = new CSCResultSink(db.items(), rules);
+
+        miner.setIncremental(this);
+        try {
+            miner.mine(db, pi, theta, a, k, n, maxlen, rules, verbatim,
+                    false, sink);
+        }finally{
+            miner.setIncremental(null);
+        }
+
+        R_result result = sink.getResult();
+        result.setComplete(miner.isComplete());
+        return result;
+    }
+
+    // the miner running the DFS (for the limits)
+    public NBMiner getMiner() {
+        return miner;
+    }
+
+    public int getPartitions() {
+        return workers != null ? workers.length : processes.length;
+    }
+
+    // stop the workers (worker processes are ended after their
+    // connections are closed, killed if they do not exit in time)
+    public void close() {
+        if (pool != null) pool.shutdown();
+
+        if (processes == null) return;
+        for (int w = 0; w < processes.length; w++) {
+            try {
+                if (out[w] != null) {
+                    out[w].writeInt(-1);
+                    out[w].flush();
+                }
+            }catch(IOException e) {
+                // the worker is gone
+            }
+            closeQuietly(w);
+        }
+
+        boolean interrupted = false;
+        for (int w = 0; w < processes.length; w++) {
+            Process process = processes[w];
+            if (process == null) continue;
+            processes[w] = null;
+
+            process.destroy();
+            try {
+                if (!interrupted &&
+                        process.waitFor(EXIT_TIMEOUT, TimeUnit.SECONDS))
+                    continue;
+            }catch(InterruptedException e) {
+                interrupted = true;
+            }
+            process.destroyForcibly();
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // close the streams and the socket of worker process w
+    private void closeQuietly(int w) {
+        closeQuietly(out[w]);
+        closeQuietly(in[w]);
+        closeQuietly(sockets[w]);
+        out[w] = null;
+        in[w] = null;
+        sockets[w] = null;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        }catch(IOException e) {
+            // already closed by the worker
+        }
+    }
+
+
+    // the selection of l from the merged counts of the shards
+    public Selection getSelection(Itemset l) {
+        final int length = l.size();
+        if (key.length < length) key = new int[length * 2];
+        System.arraycopy(l.getItems(), 0, key, 0, length);
+        final int[] theKey = key;
+
+        counts.clear(false);
+        try {
+            if (workers != null) {
+                for (int w = 0; w < workers.length; w++) {
+                    final PartitionWorker worker = workers[w];
+                    pending[w] = pool.submit(new Callable<PartitionWorker>() {
+                        public PartitionWorker call() {
+                            worker.count(theKey, length);
+                            return worker;
+                        }
+                    });
+                }
+                for (int w = 0; w < workers.length; w++) {
+                    pending[w].get();
+                    for (int i = 0, touched = workers[w].touched();
+                            i < touched; i++) {
+                        int item = workers[w].getTouched(i);
+                        counts.set(item, counts.get(item) +
+                                workers[w].getCount(item));
+                    }
+                }
+            }else{
+                // send to all workers first, so they count in parallel
+                for (int w = 0; w < out.length; w++) {
+                    out[w].writeInt(length);
+                    for (int j = 0; j < length; j++) out[w].writeInt(key[j]);
+                    out[w].flush();
+                }
+                for (int w = 0; w < in.length; w++) {
+                    int touched = in[w].readInt();
+                    for (int i = 0; i < touched; i++) {
+                        int item = in[w].readInt();
+                        counts.set(item, counts.get(item) + in[w].readInt());
+                    }
+                }
+            }
+        }catch(IOException e) {
+            throw new RuntimeException("partition worker failed", e);
+        }catch(InterruptedException e) {
+            throw new RuntimeException(e);
+        }catch(ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        }
+
+        if (counts.touched() == 0) return Selection.EMPTY;
+        return miner.NBSelect(counts, l, scratch);
+    }
+
+    public void setSelection(Itemset l, Selection cs) {
+    }
+
+    // getSelection always returns a selection, so nothing is counted here
+    public void tidset(Itemset l, TidList target) {
+        throw new IllegalStateException("not used for partitioned mining");
+    }
+
+
+    private void init() {
+        counts = new Counts(db.items());
+        scratch = new ScratchBuffers(db.items(), db.size());
+    }
+
+    private int partitions(int partitions) {
+        if (partitions < 1)
+            partitions = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(partitions, db.size()));
+    }
+
+    // first transaction of shard w
+    private int from(int w, int partitions) {
+        return (int) ((long) db.size() * w / partitions);
+    }
+
+    // tests
+    public static void main(String[] arg) throws IOException {
+        int[] i = {0,1,2, 0,1, 1,2, 0,1,2, 0,2, 0,1,2};
+        int[] p = {0, 3, 5, 7, 10, 12, 15};
+        SparseSetOfItemsets db = new SparseSetOfItemsets(i, p, 3);
+
+        R_result single = new NBMiner().R_mine(db, 0.5, 0.5, 1.0, 1.0, 6, 3,
+                false, false, false);
+
+        PartitionedNBMiner threads = new PartitionedNBMiner(db, 3);
+        R_result result = threads.R_mine(0.5, 0.5, 1.0, 1.0, 6, 3, false,
+                false);
+        threads.close();
+        System.out.println("3 threads: " + result.getPrecision().length +
+                " itemsets (" + single.getPrecision().length +
+                " in one piece)");
+
+        File file = File.createTempFile("partitioned", ".db");
+        MappedSetOfItemsets.write(db, file.getPath());
+        PartitionedNBMiner processes = new PartitionedNBMiner(file.getPath(),
+                2, null);
+        Process[] started = processes.processes.clone();
+        try {
+            result = processes.R_mine(0.5, 0.5, 1.0, 1.0, 6, 3, false, false);
+        }finally{
+            processes.close();
+            file.delete();
+        }
+        boolean exited = true;
+        for (int w = 0; w < started.length; w++)
+            if (started[w].isAlive()) exited = false;
+        System.out.println("2 processes: " + result.getPrecision().length +
+                " itemsets, workers exited: " + exited);
+    }
+}
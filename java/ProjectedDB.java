@@ -0,0 +1,125 @@
+/*
+ * Projected database of an itemset l: the transactions which contain l 
+ * without the items of l, stored as a compact sparse set of itemsets. The
+ * transactions keep their tids in the database. Children project from 
+ * their parent's projection, so deep levels of the DFS scan small local
+ * arrays instead of the whole transactions of the database.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class ProjectedDB extends Tidset {
+
+    private int[] tids;
+    private int[] p;
+    private int[] i;
+    private int size = 0;
+
+    public ProjectedDB() {
+        this(16, 64);
+    }
+
+    public ProjectedDB(int transactions, int incidences) {
+        tids = new int[Math.max(transactions, 1)];
+        p = new int[Math.max(transactions, 1) + 1];
+        i = new int[Math.max(incidences, 1)];
+    }
+
+    // start a new transaction (add its items with add)
+    public void addTransaction(int tid) {
+        if (size == tids.length) {
+            tids = grow(tids, size * 2);
+            p = grow(p, size * 2 + 1);
+        }
+        tids[size++] = tid;
+        p[size] = p[size-1];
+    }
+
+    // add an item to the last transaction
+    public void add(int item) {
+        if (p[size] == i.length) i = grow(i, i.length * 2);
+        i[p[size]++] = item;
+    }
+
+    // make room for incidences more items
+    public void ensureCapacity(int incidences) {
+        if (p[size] + incidences > i.length) 
+            i = grow(i, Math.max(i.length * 2, p[size] + incidences));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int incidences() {
+        return p[size];
+    }
+
+    // tid of the transaction at index in the database
+    public int getTid(int index) {
+        return tids[index];
+    }
+
+    public int start(int index) {
+        return p[index];
+    }
+
+    public int end(int index) {
+        return p[index+1];
+    }
+
+    public int item(int pos) {
+        return i[pos];
+    }
+
+    // keeps the arrays so the projection can be reused
+    public void clear() {
+        size = 0;
+    }
+
+    public Tidset copy() {
+        ProjectedDB projection = new ProjectedDB(size, p[size]);
+        System.arraycopy(tids, 0, projection.tids, 0, size);
+        System.arraycopy(p, 0, projection.p, 0, size + 1);
+        System.arraycopy(i, 0, projection.i, 0, p[size]);
+        projection.size = size;
+        return projection;
+    }
+
+    private static int[] grow(int[] array, int capacity) {
+        int[] newArray = new int[capacity];
+        System.arraycopy(array, 0, newArray, 0, array.length);
+        return newArray;
+    }
+
+    public String toString() {
+        StringBuffer buffer = new StringBuffer();
+        for (int t = 0; t < size; t++) {
+            if (t > 0) buffer.append(", ");
+            buffer.append(tids[t] + ":{");
+            for (int pos = p[t]; pos < p[t+1]; pos++) {
+                if (pos > p[t]) buffer.append(",");
+                buffer.append(i[pos]);
+            }
+            buffer.append("}");
+        }
+        return buffer.toString();
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        ProjectedDB projection = new ProjectedDB(1, 1);
+        for (int t = 0; t < 5; t++) {
+            projection.addTransaction(t * 2);
+            for (int item = 0; item < t; item++) projection.add(item);
+        }
+
+        System.out.println("projection: " + projection);
+        System.out.println("size: " + projection.size() + 
+                ", incidences: " + projection.incidences());
+        System.out.println("copy: " + projection.copy());
+
+        projection.clear();
+        System.out.println("after clear, isEmpty? " + projection.isEmpty());
+    }
+}
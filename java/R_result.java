@@ -1,6 +1,4 @@
-import java.util.AbstractCollection;
-import java.util.Iterator;
-import java.util.Vector;
+import java.io.IOException;
 
 class R_result {
     private boolean rules;
@@ -9,44 +7,22 @@ class R_result {
     private SparseSetOfItemsets rhs;
 
     private double[] precision;
+    private boolean complete = true;
 
-    R_result(AbstractCollection c, int items, boolean rules) {
-        Iterator it;
-
-        this.rules = rules;
-        
-        if(rules) {
-            // split rules into two collections
-            Vector lhsVec = new Vector(c.size());
-            Vector rhsVec = new Vector(c.size());
-            Rule rule;
-
-            it = c.iterator();
-            while(it.hasNext()) { 
-                rule = (Rule) it.next();
-                lhsVec.add(rule.getLhs());
-                rhsVec.add(rule.getRhs());
-            }
+    // NB-frequent itemsets
+    R_result(SparseSetOfItemsets items, double[] precision) {
+        this.rules = false;
+        this.items = items;
+        this.precision = precision;
+    }
 
-            lhs = new SparseSetOfItemsets(lhsVec, items);
-            rhs = new SparseSetOfItemsets(rhsVec, items);
-        
-        }else{
-            this.items = new SparseSetOfItemsets(c, items);
-        }
-    
-    
-        // get precision
-        precision = new double[c.size()];
-        Association set;
-        it = c.iterator();
-        int ps = 0;
-        while(it.hasNext()) { // I hope the iterator uses the same order
-            set = (Association) it.next();
-            precision[ps] = set.getPrecision();
-            ps++;
-        }
-    
+    // NB-precise rules
+    R_result(SparseSetOfItemsets lhs, SparseSetOfItemsets rhs, 
+            double[] precision) {
+        this.rules = true;
+        this.lhs = lhs;
+        this.rhs = rhs;
+        this.precision = precision;
     }
     
 
@@ -65,8 +41,32 @@ class R_result {
     boolean getRules() {
         return rules;
     }
+
+    // false if mining was stopped early (the result is partial)
+    boolean getComplete() {
+        return complete;
+    }
+
+    void setComplete(boolean complete) {
+        this.complete = complete;
+    }
     
     double[] getPrecision() {
         return precision;
     }
+
+    // compact binary encoding (see ResultEncoder)
+    byte[] getEncoded(boolean floatPrecision) {
+        return new ResultEncoder(this, floatPrecision).toBytes();
+    }
+
+    // the encoding is too large for getEncoded (use writeEncoded)
+    boolean isLargeEncoded(boolean floatPrecision) {
+        return new ResultEncoder(this, floatPrecision).isLarge();
+    }
+
+    void writeEncoded(String file, boolean floatPrecision) 
+        throws IOException {
+        new ResultEncoder(this, floatPrecision).write(file);
+    }
 }
@@ -0,0 +1,334 @@
+/*
+ * Compact binary encoding of an R_result which R reads in one bulk step
+ * (readBin on a raw vector or a file). All sections are parallel arrays in
+ * the order of the result, so the precision of pattern j is always the
+ * j-th precision (little endian):
+ *
+ *   header:    magic (int), version (int), flags (int), items (int),
+ *              size (int), incidences (int), item width (int),
+ *              length width (int)
+ *   lengths:   size values (length width bytes each; the number of items
+ *              of each itemset or lhs)
+ *   items:     incidences values (item width bytes each; the first item
+ *              of an itemset and then the differences to the previous item)
+ *   rhs:       only for rules: rhs incidences (int), size lengths and the
+ *              items of the rhs as above
+ *   precision: size floats or doubles
+ *
+ * The widths are 1, 2 or 4 bytes (the smallest which fits all values).
+ * flags: 1 = rules, 2 = complete, 4 = float precision.
+ *
+ * Encodings larger than a Java array (see isLarge) can only be written to
+ * a file, which is done through a small direct buffer.
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+public class ResultEncoder {
+
+    private static final int MAGIC = 0x4E425253;   // "NBRS"
+    private static final int VERSION = 1;
+    private static final int HEADER = 32;
+
+    // largest byte array (some VMs reserve header words in arrays)
+    private static final long MAX_ARRAY = Integer.MAX_VALUE - 8;
+
+    // bytes of the direct buffer used by write
+    private static final int WRITE_BUFFER = 1 << 20;
+
+    private static final int RULES = 1;
+    private static final int COMPLETE = 2;
+    private static final int FLOAT = 4;
+
+    private R_result result;
+    private boolean floatPrecision;
+
+    private int[] i;
+    private int[] p;
+    private int[] rhsI;
+    private int[] rhsP;
+    private int items;
+    private int itemWidth;
+    private int lengthWidth;
+
+    // the buffer is flushed to this channel when it is full (only while
+    // writing to a file)
+    private FileChannel channel;
+
+    // floatPrecision: store the precision as floats (7 digits)
+    public ResultEncoder(R_result result, boolean floatPrecision) {
+        this.result = result;
+        this.floatPrecision = floatPrecision;
+
+        SparseSetOfItemsets items = result.getRules() ? result.getLhs()
+            : result.getItems();
+        i = items.getI();
+        p = items.getP();
+        this.items = items.items();
+        if (result.getRules()) {
+            rhsI = result.getRhs().getI();
+            rhsP = result.getRhs().getP();
+        }
+
+        // maximal item (difference) and length
+        int[] max = new int[2];
+        max(i, p, max);
+        if (rhsI != null) max(rhsI, rhsP, max);
+
+        itemWidth = width(max[0]);
+        lengthWidth = width(max[1]);
+    }
+
+    // number of bytes of the encoding
+    public long encodedSize() {
+        int size = p.length - 1;
+        return HEADER + (long) size * lengthWidth
+            + (long) i.length * itemWidth
+            + (rhsI == null ? 0 : 4 + (long) size * lengthWidth
+                    + (long) rhsI.length * itemWidth)
+            + (long) size * (floatPrecision ? 4 : 8);
+    }
+
+    // the encoding does not fit into a byte array (see toBytes)
+    public boolean isLarge() {
+        return encodedSize() > MAX_ARRAY;
+    }
+
+    // write the encoding to buffer (at its position)
+    public void encode(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int size = p.length - 1;
+        double[] precision = result.getPrecision();
+
+        int flags = (result.getRules() ? RULES : 0)
+            | (result.getComplete() ? COMPLETE : 0)
+            | (floatPrecision ? FLOAT : 0);
+        ensure(buffer, HEADER);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(flags)
+            .putInt(items)
+            .putInt(size).putInt(i.length)
+            .putInt(itemWidth).putInt(lengthWidth);
+
+        put(buffer, i, p);
+        if (rhsI != null) {
+            ensure(buffer, 4);
+            buffer.putInt(rhsI.length);
+            put(buffer, rhsI, rhsP);
+        }
+
+        for (int index = 0; index < size; index++) {
+            ensure(buffer, 8);
+            if (floatPrecision) buffer.putFloat((float) precision[index]);
+            else buffer.putDouble(precision[index]);
+        }
+    }
+
+    public byte[] toBytes() {
+        if (isLarge())
+            throw new IllegalStateException(
+                    "result is too large, write it to a file");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) encodedSize());
+        encode(buffer);
+        return buffer.array();
+    }
+
+    // write the encoding to a file (through a direct buffer, so the size
+    // is not limited)
+    public void write(String file) throws IOException {
+        write(file, WRITE_BUFFER);
+    }
+
+    // write with a direct buffer of bufferSize bytes (at least 32)
+    void write(String file, int bufferSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(
+                (int) Math.min(bufferSize, encodedSize()));
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            channel = raf.getChannel();
+            channel.truncate(0);
+            encode(buffer);
+            flush(buffer);
+        }catch(UncheckedIOException e) {
+            throw e.getCause();
+        }finally{
+            channel = null;
+            raf.close();
+        }
+    }
+
+    // make room for bytes in buffer while writing to a file
+    private void ensure(ByteBuffer buffer, int bytes) {
+        if (channel == null || buffer.remaining() >= bytes) return;
+        try {
+            flush(buffer);
+        }catch(IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void flush(ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    // read an encoded result
+    public static R_result decode(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != MAGIC)
+            throw new IllegalArgumentException(
+                    "not an encoded NBMiner result");
+        int version = buffer.getInt();
+        if (version != VERSION)
+            throw new IllegalArgumentException("unsupported version " +
+                    version);
+
+        int flags = buffer.getInt();
+        int items = buffer.getInt();
+        int size = buffer.getInt();
+        int incidences = buffer.getInt();
+        int itemWidth = buffer.getInt();
+        int lengthWidth = buffer.getInt();
+
+        int[] p = new int[size + 1];
+        int[] i = new int[incidences];
+        get(buffer, i, p, itemWidth, lengthWidth);
+
+        int[] rhsI = null;
+        int[] rhsP = null;
+        if ((flags & RULES) != 0) {
+            rhsI = new int[buffer.getInt()];
+            rhsP = new int[size + 1];
+            get(buffer, rhsI, rhsP, itemWidth, lengthWidth);
+        }
+
+        double[] precision = new double[size];
+        for (int index = 0; index < size; index++)
+            precision[index] = (flags & FLOAT) != 0 ? buffer.getFloat()
+                : buffer.getDouble();
+
+        R_result result;
+        if (rhsI == null)
+            result = new R_result(new SparseSetOfItemsets(i, p, items),
+                    precision);
+        else
+            result = new R_result(new SparseSetOfItemsets(i, p, items),
+                    new SparseSetOfItemsets(rhsI, rhsP, items), precision);
+        result.setComplete((flags & COMPLETE) != 0);
+        return result;
+    }
+
+    // max[0] is the maximal value of an item (difference), max[1] the
+    // maximal length
+    private static void max(int[] i, int[] p, int[] max) {
+        for (int index = 0; index < p.length - 1; index++) {
+            if (max[1] < p[index+1] - p[index])
+                max[1] = p[index+1] - p[index];
+            for (int pos = p[index]; pos < p[index+1]; pos++) {
+                int value = pos == p[index] ? i[pos] : i[pos] - i[pos-1];
+                if (max[0] < value) max[0] = value;
+            }
+        }
+    }
+
+    // the lengths and the delta-coded items of a set of itemsets
+    private void put(ByteBuffer buffer, int[] i, int[] p) {
+        for (int index = 0; index < p.length - 1; index++)
+            put(buffer, p[index+1] - p[index], lengthWidth);
+
+        for (int index = 0; index < p.length - 1; index++)
+            for (int pos = p[index]; pos < p[index+1]; pos++)
+                put(buffer, pos == p[index] ? i[pos] : i[pos] - i[pos-1],
+                        itemWidth);
+    }
+
+    private static void get(ByteBuffer buffer, int[] i, int[] p,
+            int itemWidth, int lengthWidth) {
+        for (int index = 0; index < p.length - 1; index++)
+            p[index+1] = p[index] + get(buffer, lengthWidth);
+
+        for (int index = 0; index < p.length - 1; index++)
+            for (int pos = p[index]; pos < p[index+1]; pos++)
+                i[pos] = get(buffer, itemWidth) +
+                    (pos == p[index] ? 0 : i[pos-1]);
+    }
+
+    private static int width(int max) {
+        if (max < 1 << 8) return 1;
+        if (max < 1 << 16) return 2;
+        return 4;
+    }
+
+    private void put(ByteBuffer buffer, int value, int width) {
+        ensure(buffer, width);
+        if (width == 1) buffer.put((byte) value);
+        else if (width == 2) buffer.putShort((short) value);
+        else buffer.putInt(value);
+    }
+
+    private static int get(ByteBuffer buffer, int width) {
+        if (width == 1) return buffer.get() & 0xFF;
+        if (width == 2) return buffer.getShort() & 0xFFFF;
+        return buffer.getInt();
+    }
+
+    // tests
+    public static void main(String[] arg) throws IOException {
+        CSCResultSink sink = new CSCResultSink(1000, false);
+        int[] items = {1, 3, 5, 18, 44, 300, 999};
+        for (int j = 1; j <= 300; j++)
+            sink.addItemset(items, j % items.length, 1.0 - j / 1000.0);
+
+        R_result result = sink.getResult();
+        ResultEncoder encoder = new ResultEncoder(result, true);
+        byte[] bytes = encoder.toBytes();
+        R_result decoded = decode(ByteBuffer.wrap(bytes));
+        System.out.println(bytes.length + " bytes (" +
+                (4 * result.getItems().getI().length +
+                 4 * result.getItems().getP().length +
+                 8 * result.getPrecision().length) + " as arrays): " +
+                decoded.getItems().getItemset(6) + " precision " +
+                decoded.getPrecision()[6]);
+
+        CSCResultSink ruleSink = new CSCResultSink(50, true);
+        ruleSink.addRule(items, 2, 18, 0.99);
+        ruleSink.addRule(items, 0, 44, 0.98);
+        result = ruleSink.getResult();
+        result.setComplete(false);
+
+        java.io.File file = java.io.File.createTempFile("result", ".nbr");
+        new ResultEncoder(result, false).write(file.getPath());
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        byte[] read = new byte[(int) raf.length()];
+        raf.readFully(read);
+        raf.close();
+        file.delete();
+
+        decoded = decode(ByteBuffer.wrap(read));
+        System.out.println(decoded.getLhs().getItemset(0) + " => " +
+                decoded.getRhs().getItemset(0) + " precision " +
+                decoded.getPrecision()[0] + ", complete " +
+                decoded.getComplete());
+
+        // a file written through a buffer smaller than the encoding
+        file = java.io.File.createTempFile("result", ".nbr");
+        encoder.write(file.getPath(), 64);
+        raf = new RandomAccessFile(file, "r");
+        read = new byte[(int) raf.length()];
+        raf.readFully(read);
+        raf.close();
+        file.delete();
+        System.out.println("written with a 64 byte buffer: " +
+                (java.util.Arrays.equals(read, bytes) ? "same" : "DIFFERS") +
+                " as the byte array");
+    }
+}
@@ -0,0 +1,19 @@
+/*
+ * Receives the NB-frequent itemsets or NB-precise rules from NBMiner as 
+ * they are found. The arrays passed to a sink are reused by the miner and
+ * have to be copied.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public interface ResultSink {
+
+    // NB-frequent itemset items[0..length-1] (in increasing order)
+    void addItemset(int[] items, int length, double precision);
+
+    // NB-precise rule lhs[0..length-1] => {rhs}
+    void addRule(int[] lhs, int length, int rhs, double precision);
+
+    // number of itemsets/rules added
+    int size();
+}
@@ -0,0 +1,344 @@
+/*
+ * Generation of NB-precise rules from the selections recorded by a mining
+ * run (see NBMiner.setRecorder) as a separate stage, so the rules can be
+ * generated again with other thresholds without mining. A rule l => C is
+ * generated for an explored itemset l if every item of the consequent C
+ * was selected for l (is NB-precise given l) with at least the minimal
+ * precision. The precision of the rule is the smallest precision of its
+ * items. With consequents of one item and the pi and maxlen used for
+ * mining, the rules are the NB-precise rules found by NBMiner.
+ *
+ * A higher minimal precision filters the recorded selections by the
+ * qualifying precision of the items (the largest pi for which NBSelect
+ * selects them). Mining with a higher pi can explore fewer itemsets, so
+ * the rules are a superset of the rules mined with that pi. If the theta
+ * of the mining run is given, the lhs are restricted to the itemsets which
+ * mining with the minimal precision explores (the DFS is replayed on the
+ * filtered selections), so the rules are the rules mined with that pi.
+ *
+ * The recorded itemsets are split into chunks which are processed by
+ * separate threads. The rules are collected in a RuleTable in the order
+ * the itemsets were recorded and then by the size of the consequent.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class RuleGenerator {
+
+    // recorded itemsets per thread at least
+    private static final int MIN_CHUNK = 1 << 10;
+
+    private SelectionStore selections;
+    private int items;
+    private double theta;
+
+    private RuleTable rules;
+
+    // selections recorded by NBMiner for a database with items (the order
+    // of the itemsets recorded by parallel mining depends on the threads)
+    public RuleGenerator(SelectionStore selections, int items) {
+        this(selections, items, -1.0);
+    }
+
+    // theta of the mining run (negative: every recorded itemset is a lhs)
+    public RuleGenerator(SelectionStore selections, int items, 
+            double theta) {
+        this.selections = selections;
+        this.items = items;
+        this.theta = theta;
+    }
+
+    // generate the rules with at least minPrecision, at most maxlen items
+    // and at most maxRhs items in the consequent (threads: 0 uses all
+    // cores)
+    public R_result generate(double minPrecision, int maxlen, int maxRhs,
+            int threads) {
+        if (threads < 1) threads = Runtime.getRuntime().availableProcessors();
+
+        final ItemsetTable table = selections.getTable();
+        final int size = table.size();
+        final boolean[] explored = theta < 0 ? null : 
+            explored(minPrecision, maxlen);
+        int chunks = Math.max(1, Math.min(threads, size / MIN_CHUNK));
+
+        final Chunk[] results = new Chunk[chunks];
+        Thread[] workers = new Thread[chunks];
+
+        for (int c = 0; c < chunks; c++) {
+            final Chunk chunk = new Chunk(minPrecision, maxlen, maxRhs);
+            final int from = (int) ((long) size * c / chunks);
+            final int to = (int) ((long) size * (c+1) / chunks);
+            results[c] = chunk;
+
+            workers[c] = new Thread() {
+                public void run() {
+                    for (int id = from; id < to; id++)
+                        if (explored == null || explored[id])
+                            chunk.generate(table, id, selections.get(id));
+                }
+            };
+            if (chunks > 1) workers[c].start();
+            else workers[c].run();
+        }
+
+        if (chunks > 1) {
+            for (int c = 0; c < chunks; c++) {
+                try {
+                    workers[c].join();
+                }catch(InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
+        // collect in order (a rule is only kept once)
+        rules = new RuleTable();
+        int[] lhs = new int[16];
+        for (int c = 0; c < chunks; c++) {
+            Chunk chunk = results[c];
+
+            for (int r = 0; r < chunk.size; r++) {
+                int id = chunk.itemset[r];
+                int lhsLength = table.length(id);
+                if (lhs.length < lhsLength) lhs = new int[lhsLength * 2];
+                for (int j = 0; j < lhsLength; j++) lhs[j] = table.get(id, j);
+
+                rules.add(lhs, lhsLength, chunk.rhs, chunk.rhsStart[r],
+                        chunk.rhsStart[r+1] - chunk.rhsStart[r],
+                        chunk.precision[r]);
+            }
+        }
+
+        return rules.getResult(items);
+    }
+
+    // the rules of the last generate call
+    public RuleTable getRules() {
+        return rules;
+    }
+
+    // the recorded itemsets explored by mining with minPrecision (as lhs of
+    // rules with at most maxlen items). Which itemsets are explored does
+    // not depend on the order of the DFS, so the itemsets are counted in
+    // the order of the table.
+    private boolean[] explored(double minPrecision, int maxlen) {
+        ItemsetTable table = selections.getTable();
+        boolean[] explored = new boolean[table.size()];
+        ItemsetTable repository = new ItemsetTable();
+        int[] queue = new int[Math.max(1, table.size())];
+        int head = 0;
+        int tail = 0;
+        int[] key = new int[16];
+
+        // all items are selected for the empty set and counted once
+        for (int id = 0; id < table.size(); id++) {
+            if (table.length(id) != 1 || 1 < theta || maxlen < 2) continue;
+            explored[id] = true;
+            queue[tail++] = id;
+        }
+
+        while (head < tail) {
+            int id = queue[head++];
+            Selection cs = selections.get(id);
+            int size = table.length(id) + 1;
+            if (cs == null || size > maxlen - 1) continue;
+
+            int needed = Math.max(1, (int) Math.ceil(theta * size));
+            if (key.length < size) key = new int[size * 2];
+
+            for (int i = 0; i < cs.size(); i++) {
+                if (Chunk.qualifying(cs, i) < minPrecision) continue;
+
+                // the sorted items of l + {item}
+                int item = cs.getItem(i);
+                int k = 0;
+                for (int j = 0; j < size - 1; j++) {
+                    int lItem = table.get(id, j);
+                    if (k == j && item < lItem) key[k++] = item;
+                    key[k++] = lItem;
+                }
+                if (k < size) key[k] = item;
+
+                if (repository.increment(repository.add(key, size)) != 
+                        needed) continue;
+                int cId = table.find(key, size);
+                if (cId < 0 || explored[cId]) continue;
+                explored[cId] = true;
+                queue[tail++] = cId;
+            }
+        }
+
+        return explored;
+    }
+
+
+    // rules generated by one thread: the id of the lhs in the table, the
+    // consequent and the precision per rule
+    private static class Chunk {
+        double minPrecision;
+        int maxlen;
+        int maxRhs;
+
+        int size = 0;
+        int[] itemset = new int[256];
+        int[] rhsStart = new int[257];
+        int[] rhs = new int[1024];
+        double[] precision = new double[256];
+
+        // buffers for the enumeration of the consequents
+        int[] eligible = new int[16];
+        int[] combination = new int[16];
+
+        Chunk(double minPrecision, int maxlen, int maxRhs) {
+            this.minPrecision = minPrecision;
+            this.maxlen = maxlen;
+            this.maxRhs = maxRhs;
+        }
+
+        // all consequents of the selected items of itemset id with up to
+        // maxRhs items (by size, then in lexicographic order)
+        void generate(ItemsetTable table, int id, Selection cs) {
+            int length = table.length(id);
+            if (cs == null || length == 0) return;
+
+            int eligibleSize = 0;
+            if (eligible.length < cs.size()) eligible = new int[cs.size()];
+            for (int i = 0; i < cs.size(); i++)
+                if (qualifying(cs, i) >= minPrecision)
+                    eligible[eligibleSize++] = i;
+
+            int maxSize = Math.min(Math.min(maxRhs, maxlen - length),
+                    eligibleSize);
+            if (combination.length < maxSize) combination = new int[maxSize];
+
+            for (int m = 1; m <= maxSize; m++) {
+                for (int j = 0; j < m; j++) combination[j] = j;
+
+                do {
+                    add(id, cs, m);
+                }while (next(m, eligibleSize));
+            }
+        }
+
+        // the largest pi for which item i is selected (its precision if
+        // the selection was recorded without it)
+        private static double qualifying(Selection cs, int i) {
+            return cs.hasQualifying() ? cs.getQualifying(i) : 
+                cs.getPrecision(i);
+        }
+
+        private void add(int id, Selection cs, int m) {
+            if (size + 1 == rhsStart.length) {
+                itemset = grow(itemset, size * 2);
+                rhsStart = grow(rhsStart, size * 2 + 1);
+                double[] newPrecision = new double[size * 2];
+                System.arraycopy(precision, 0, newPrecision, 0, size);
+                precision = newPrecision;
+            }
+            if (rhsStart[size] + m > rhs.length)
+                rhs = grow(rhs, Math.max(rhs.length * 2, rhsStart[size] + m));
+
+            double minimum = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < m; j++) {
+                int i = eligible[combination[j]];
+                rhs[rhsStart[size] + j] = cs.getItem(i);
+                minimum = Math.min(minimum, cs.getPrecision(i));
+            }
+
+            itemset[size] = id;
+            precision[size] = minimum;
+            size++;
+            rhsStart[size] = rhsStart[size-1] + m;
+        }
+
+        // next combination of m out of n indices (false after the last)
+        private boolean next(int m, int n) {
+            int j = m - 1;
+            while (j >= 0 && combination[j] == n - m + j) j--;
+            if (j < 0) return false;
+
+            combination[j]++;
+            for (int k = j + 1; k < m; k++)
+                combination[k] = combination[k-1] + 1;
+            return true;
+        }
+
+        private static int[] grow(int[] array, int capacity) {
+            int[] newArray = new int[capacity];
+            System.arraycopy(array, 0, newArray, 0, array.length);
+            return newArray;
+        }
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        // selections as recorded by NBMiner
+        SelectionStore selections = new SelectionStore();
+        selections.set(selections.getTable().add(new int[] {1}, 1),
+                new Selection(new int[] {3, 5, 18},
+                    new double[] {0.999, 0.995, 0.9}), 0);
+        selections.set(selections.getTable().add(new int[] {1, 3}, 2),
+                new Selection(new int[] {5, 44},
+                    new double[] {0.999, 0.99}), 0);
+        selections.set(selections.getTable().add(new int[] {1, 3, 5}, 3),
+                Selection.EMPTY, 0);
+
+        RuleGenerator generator = new RuleGenerator(selections, 50);
+        System.out.println("pi = 0.9: " +
+                generator.generate(0.9, 5, 1, 2).getPrecision().length +
+                " rules");
+
+        generator.generate(0.99, 3, 2, 2);
+        RuleTable rules = generator.getRules();
+        System.out.println("pi = 0.99, maxlen = 3, up to 2 rhs items:");
+        for (int id = 0; id < rules.size(); id++)
+            System.out.println(rules.getLhs(id) + " => " + rules.getRhs(id) +
+                    " precision " + rules.getPrecision(id));
+
+        // the rules generated for a higher pi are the rules mined with it
+        int size = 2000;
+        int[] i = new int[size * 30];
+        int[] p = new int[size + 1];
+        int pos = 0;
+        int seed = 7;
+        for (int t = 0; t < size; t++) {
+            for (int item = 0; item < 30; item++) {
+                seed = seed * 1103515245 + 12345;
+                // items 0-3 and 10-12 co-occur
+                if ((item < 4 && t % 5 == 0) || 
+                        (item >= 10 && item < 13 && t % 7 == 0) || 
+                        (seed >>> 8) % 100 < 3) i[pos++] = item;
+            }
+            p[t+1] = pos;
+        }
+        int[] theI = new int[pos];
+        System.arraycopy(i, 0, theI, 0, pos);
+        SparseSetOfItemsets db = new SparseSetOfItemsets(theI, p, 30);
+        NBEstimator estimator = new NBEstimator(db, 1);
+        estimator.estimate(0.0, true);
+
+        NBMiner miner = new NBMiner();
+        SelectionStore recorded = new SelectionStore();
+        miner.setRecorder(recorded);
+        miner.R_mine(db, 0.5, 0.5, estimator.getA(), estimator.getK(), 
+                estimator.getN(), 4, true, false, false);
+        R_result mined = new NBMiner().R_mine(db, 0.9, 0.5, 
+                estimator.getA(), estimator.getK(), estimator.getN(), 4, 
+                true, false, false);
+
+        generator = new RuleGenerator(recorded, 30, 0.5);
+        generator.generate(0.9, 4, 1, 2);
+        rules = generator.getRules();
+        boolean same = rules.size() == mined.getPrecision().length;
+        for (int r = 0; same && r < mined.getPrecision().length; r++) {
+            int id = rules.find(mined.getLhs().getItemset(r).getItems(), 
+                    mined.getLhs().getItemset(r).size(), 
+                    mined.getRhs().getItemset(r).getItems(), 1);
+            same = id >= 0 && 
+                rules.getPrecision(id) == mined.getPrecision()[r];
+        }
+        System.out.println("pi = 0.9 from a run with pi = 0.5: " + 
+                rules.size() + " rules, " + 
+                (same ? "same as mined with pi = 0.9" : "DIFFERS"));
+    }
+}
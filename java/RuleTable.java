@@ -0,0 +1,144 @@
+/*
+ * Primitive table of rules lhs => rhs with their precision. A rule is
+ * stored as one key in an ItemsetTable: the items of the lhs followed by
+ * the items of the rhs as -1-item (so the split is known and no Rule
+ * objects or their weak hash codes are needed). Rules are identified by
+ * dense ids in the order they are added; a rule which is added again is
+ * not stored twice.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class RuleTable {
+
+    private ItemsetTable table = new ItemsetTable();
+    private double[] precision = new double[256];
+    private int[] key = new int[16];
+
+    // id of the new rule or -1 if the rule is already in the table
+    public int add(int[] lhs, int lhsLength, int[] rhs, int rhsLength,
+            double thePrecision) {
+        return add(lhs, lhsLength, rhs, 0, rhsLength, thePrecision);
+    }
+
+    // the rhs is rhs[rhsOffset..rhsOffset+rhsLength-1]
+    public int add(int[] lhs, int lhsLength, int[] rhs, int rhsOffset,
+            int rhsLength, double thePrecision) {
+        int size = table.size();
+        int id = table.add(key(lhs, lhsLength, rhs, rhsOffset, rhsLength),
+                lhsLength + rhsLength);
+        if (id < size) return -1;
+
+        if (id == precision.length) {
+            double[] newPrecision = new double[id * 2];
+            System.arraycopy(precision, 0, newPrecision, 0, id);
+            precision = newPrecision;
+        }
+        precision[id] = thePrecision;
+        return id;
+    }
+
+    // id of the rule or -1
+    public int find(int[] lhs, int lhsLength, int[] rhs, int rhsLength) {
+        return table.find(key(lhs, lhsLength, rhs, 0, rhsLength),
+                lhsLength + rhsLength);
+    }
+
+    public int size() {
+        return table.size();
+    }
+
+    public double getPrecision(int id) {
+        return precision[id];
+    }
+
+    public int lhsLength(int id) {
+        int length = table.length(id);
+        int lhsLength = 0;
+        while (lhsLength < length && table.get(id, lhsLength) >= 0)
+            lhsLength++;
+        return lhsLength;
+    }
+
+    public Itemset getLhs(int id) {
+        int[] items = new int[lhsLength(id)];
+        for (int j = 0; j < items.length; j++) items[j] = table.get(id, j);
+        return new Itemset(items);
+    }
+
+    public Itemset getRhs(int id) {
+        int lhsLength = lhsLength(id);
+        int[] items = new int[table.length(id) - lhsLength];
+        for (int j = 0; j < items.length; j++)
+            items[j] = -1 - table.get(id, lhsLength + j);
+        return new Itemset(items);
+    }
+
+    // the rules in the order of their ids (for R)
+    public R_result getResult(int items) {
+        int size = size();
+        int[] lhsP = new int[size + 1];
+        int[] rhsP = new int[size + 1];
+        for (int id = 0; id < size; id++) {
+            int lhsLength = lhsLength(id);
+            lhsP[id+1] = lhsP[id] + lhsLength;
+            rhsP[id+1] = rhsP[id] + table.length(id) - lhsLength;
+        }
+
+        int[] lhsI = new int[lhsP[size]];
+        int[] rhsI = new int[rhsP[size]];
+        for (int id = 0; id < size; id++) {
+            int lhsLength = lhsP[id+1] - lhsP[id];
+            for (int j = 0; j < table.length(id); j++) {
+                if (j < lhsLength) lhsI[lhsP[id] + j] = table.get(id, j);
+                else rhsI[rhsP[id] + j - lhsLength] = -1 - table.get(id, j);
+            }
+        }
+
+        double[] thePrecision = new double[size];
+        System.arraycopy(precision, 0, thePrecision, 0, size);
+
+        return new R_result(new SparseSetOfItemsets(lhsI, lhsP, items),
+                new SparseSetOfItemsets(rhsI, rhsP, items), thePrecision);
+    }
+
+    // allocated bytes (approximate)
+    public long bytes() {
+        return table.bytes() + 8L * precision.length;
+    }
+
+    private int[] key(int[] lhs, int lhsLength, int[] rhs, int rhsOffset,
+            int rhsLength) {
+        if (key.length < lhsLength + rhsLength)
+            key = new int[Math.max(lhsLength + rhsLength, key.length * 2)];
+
+        System.arraycopy(lhs, 0, key, 0, lhsLength);
+        for (int j = 0; j < rhsLength; j++)
+            key[lhsLength + j] = -1 - rhs[rhsOffset + j];
+        return key;
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        RuleTable rules = new RuleTable();
+        int[] lhs = {1, 3};
+        int[] rhs = {5, 18};
+
+        System.out.println("add {1,3} => {5,18}: " +
+                rules.add(lhs, 2, rhs, 2, 0.99));
+        System.out.println("add {1} => {3,5}: " +
+                rules.add(new int[] {1}, 1, new int[] {3, 5}, 2, 0.98));
+        System.out.println("add {1,3} => {5,18} again: " +
+                rules.add(lhs, 2, rhs, 2, 0.5));
+        System.out.println("find {1,3} => {5}: " +
+                rules.find(lhs, 2, rhs, 1));
+
+        int id = rules.find(new int[] {1}, 1, new int[] {3, 5}, 2);
+        System.out.println(rules.getLhs(id) + " => " + rules.getRhs(id) +
+                " precision " + rules.getPrecision(id));
+
+        R_result result = rules.getResult(20);
+        System.out.println("result: " + result.getLhs().getItemset(0) +
+                " => " + result.getRhs().getItemset(0));
+    }
+}
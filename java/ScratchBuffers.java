@@ -0,0 +1,171 @@
+/*
+ * Reusable per-depth buffers for the DFS of NBMiner. Each mining thread
+ * owns one instance. The depth of a DFS node is the size of its itemset.
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.util.Arrays;
+
+public class ScratchBuffers {
+
+    // number of cached NB model tables
+    private static final int MODEL_CACHE_SIZE = 256;
+
+    private int items;
+    private int transactions;
+
+    // counts (and projected tid-lists) per depth
+    private Counts[] counts = new Counts[0];
+
+    // marks the items of the itemset which is counted
+    private boolean[] member;
+
+    // tidset of the itemset per depth (used for bitsets)
+    private TidBitset[] bitsets = new TidBitset[0];
+    private TidList[] coverlists = new TidList[0];
+
+    // projected database per depth
+    private ProjectedDB[] projections = new ProjectedDB[0];
+
+    // buffers for NBSelect
+    private int[] obs = new int[16];
+    private double[] precision = new double[16];
+    private ModelCache modelCache;
+
+    // repository key of a candidate itemset
+    private int[] key = new int[16];
+
+    // metrics of the thread (null if not recorded)
+    private MiningMetrics metrics;
+
+    public ScratchBuffers(int items, int transactions) {
+        this.items = items;
+        this.transactions = transactions;
+    }
+
+    // get the (cleared) counts for a depth. The counts of a depth are only
+    // reused after all DFS calls using them have returned.
+    public Counts getCounts(int depth, boolean withTidlists) {
+        return getCounts(depth, withTidlists, false);
+    }
+
+    // counts with compressed tid-lists (if withTidlists and compress)
+    public Counts getCounts(int depth, boolean withTidlists, 
+            boolean compress) {
+        if (depth >= counts.length) {
+            Counts[] newCounts = new Counts[depth+1];
+            System.arraycopy(counts, 0, newCounts, 0, counts.length);
+            counts = newCounts;
+        }
+
+        if (counts[depth] == null) counts[depth] = new Counts(items);
+        counts[depth].clear(withTidlists, compress);
+
+        return counts[depth];
+    }
+
+    // array with one (false) entry per item; users have to reset it
+    public boolean[] getMember() {
+        if (member == null) member = new boolean[items];
+        return member;
+    }
+
+    // bitset for the tidset of an itemset at a depth (overwritten by 
+    // TidBitset.and)
+    public TidBitset getBitset(int depth) {
+        if (depth >= bitsets.length) {
+            TidBitset[] newBitsets = new TidBitset[depth+1];
+            System.arraycopy(bitsets, 0, newBitsets, 0, bitsets.length);
+            bitsets = newBitsets;
+        }
+
+        if (bitsets[depth] == null) 
+            bitsets[depth] = new TidBitset(transactions);
+
+        return bitsets[depth];
+    }
+
+    // (cleared) tid-list for the tidset of an itemset at a depth 
+    public TidList getCoverlist(int depth) {
+        if (depth >= coverlists.length) {
+            TidList[] newCoverlists = new TidList[depth+1];
+            System.arraycopy(coverlists, 0, newCoverlists, 0, 
+                    coverlists.length);
+            coverlists = newCoverlists;
+        }
+
+        if (coverlists[depth] == null) coverlists[depth] = new TidList();
+        else coverlists[depth].clear();
+
+        return coverlists[depth];
+    }
+
+    // allocated bytes of the tid-lists of all depths
+    public long tidlistBytes() {
+        long bytes = 0;
+        for (int d = 0; d < counts.length; d++) 
+            if (counts[d] != null) bytes += counts[d].tidlistBytes();
+        for (int d = 0; d < coverlists.length; d++) 
+            if (coverlists[d] != null) bytes += coverlists[d].bytes();
+        return bytes;
+    }
+
+    // (cleared) projected database of an itemset at a depth
+    public ProjectedDB getProjection(int depth) {
+        if (depth >= projections.length) {
+            ProjectedDB[] newProjections = new ProjectedDB[depth+1];
+            System.arraycopy(projections, 0, newProjections, 0, 
+                    projections.length);
+            projections = newProjections;
+        }
+
+        if (projections[depth] == null) projections[depth] = new ProjectedDB();
+        else projections[depth].clear();
+
+        return projections[depth];
+    }
+
+    // ints used by the projected databases at the depths before depth (on
+    // the current path of the DFS, a node without projection clears the 
+    // projection of its depth)
+    public long projected(int depth) {
+        long ints = 0;
+        for (int d = 0; d < Math.min(depth, projections.length); d++) 
+            if (projections[d] != null) ints += 
+                projections[d].incidences() + 2 * projections[d].size();
+        return ints;
+    }
+
+    // zeroed observed frequencies for r = 0..size-1
+    public int[] getObs(int size) {
+        if (obs.length < size) obs = new int[Math.max(size, obs.length * 2)];
+        else Arrays.fill(obs, 0, size, 0);
+        return obs;
+    }
+
+    public double[] getPrecision(int size) {
+        if (precision.length < size) 
+            precision = new double[Math.max(size, precision.length * 2)];
+        return precision;
+    }
+
+    public int[] getKey(int size) {
+        if (key.length < size) key = new int[Math.max(size, key.length * 2)];
+        return key;
+    }
+
+    public MiningMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(MiningMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public ModelCache getModelCache(double k, double a) {
+        if (modelCache == null) 
+            modelCache = new ModelCache(k, a, MODEL_CACHE_SIZE);
+        return modelCache;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Result of NBSelect for an itemset l: the candidate items (in increasing
+ * order) which are NB-frequent together with l and their precision.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class Selection {
+
+    public static final Selection EMPTY = 
+        new Selection(new int[0], new double[0]);
+
+    private int[] items;
+    private double[] precision;
+
+    // the largest pi for which NBSelect still selects the item (only known
+    // for recorded selections, see NBMiner.setRecorder)
+    private double[] qualifying;
+
+    public Selection(int[] items, double[] precision) {
+        // we don't copy the arrays!
+        this.items = items;
+        this.precision = precision;
+    }
+
+    public Selection(int[] items, double[] precision, double[] qualifying) {
+        this(items, precision);
+        this.qualifying = qualifying;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    public int getItem(int index) {
+        return items[index];
+    }
+
+    public double getPrecision(int index) {
+        return precision[index];
+    }
+
+    public boolean hasQualifying() {
+        return qualifying != null;
+    }
+
+    public double getQualifying(int index) {
+        return qualifying[index];
+    }
+
+    // the selection of NBSelect for a larger pi (the items qualifying for 
+    // pi)
+    public Selection select(double pi) {
+        int selected = 0;
+        for (int i = 0; i < items.length; i++) 
+            if (qualifying[i] >= pi) selected++;
+        if (selected == items.length) return this;
+
+        int[] newItems = new int[selected];
+        double[] newPrecision = new double[selected];
+        double[] newQualifying = new double[selected];
+        selected = 0;
+        for (int i = 0; i < items.length; i++) {
+            if (qualifying[i] < pi) continue;
+            newItems[selected] = items[i];
+            newPrecision[selected] = precision[i];
+            newQualifying[selected] = qualifying[i];
+            selected++;
+        }
+
+        return new Selection(newItems, newPrecision, newQualifying);
+    }
+
+    public String toString() {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("C={");
+        for (int i = 0; i < items.length; i++) {
+            if (i > 0) buffer.append(", ");
+            buffer.append(items[i]);
+        }
+        buffer.append("}");
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Selections (results of NBSelect) of explored itemsets, stored by the id of
+ * the itemset in an ItemsetTable. The DFS can be replayed on the stored
+ * selections without counting (parallel and incremental mining). The 
+ * version of a selection is the number of transactions in the database it
+ * was computed for.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class SelectionStore {
+
+    private ItemsetTable table = new ItemsetTable();
+    private Selection[] selections = new Selection[1024];
+    private int[] versions = new int[1024];
+    private int stored = 0;
+
+    // the itemsets (the counts of the table can be used by the miner)
+    public ItemsetTable getTable() {
+        return table;
+    }
+
+    public void set(int id, Selection cs, int version) {
+        if (id >= selections.length) {
+            int capacity = Math.max(id+1, selections.length * 2);
+            Selection[] newSelections = new Selection[capacity];
+            System.arraycopy(selections, 0, newSelections, 0, 
+                    selections.length);
+            selections = newSelections;
+
+            int[] newVersions = new int[capacity];
+            System.arraycopy(versions, 0, newVersions, 0, versions.length);
+            versions = newVersions;
+        }
+
+        if (selections[id] == null) stored++;
+        selections[id] = cs;
+        versions[id] = version;
+    }
+
+    // the selection of itemset id (null if there is none)
+    public Selection get(int id) {
+        if (id < 0 || id >= selections.length) return null;
+        return selections[id];
+    }
+
+    public int getVersion(int id) {
+        return versions[id];
+    }
+
+    // number of stored selections
+    public int size() {
+        return stored;
+    }
+}
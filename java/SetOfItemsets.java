@@ -0,0 +1,25 @@
+/*
+ * Read access to a set of itemsets (a transaction database) in compressed
+ * sparse column layout: the items of itemset index are item(pos) for 
+ * start(index) <= pos < end(index). Positions are long so that databases
+ * with more than 2^31 incidences can be stored (see MappedSetOfItemsets).
+ *
+ * This code is distributed under the GPL2
+ */
+
+public interface SetOfItemsets {
+
+    // number of itemsets
+    int size();
+
+    // number of items (item ids are 0..items()-1)
+    int items();
+
+    long incidences();
+
+    long start(int index);
+
+    long end(int index);
+
+    int item(long pos);
+}
@@ -8,23 +8,30 @@
 import java.util.AbstractCollection;
 import java.util.Iterator;
 
-public class SparseSetOfItemsets{
+public class SparseSetOfItemsets implements SetOfItemsets {
 
     private int[] i;
     private int[] p;
     private int items;
+
+    // used part of i and p (the arrays can be longer after append)
+    private int size;
+    private int incidences;
     
     // create set from i and p vectors
     public SparseSetOfItemsets(int[] i, int[] p, int items){
         this.i = i;
         this.p = p;
         this.items = items;
+        this.size = p.length-1;
+        this.incidences = i.length;
     }
     
     // create set from a collection
-    public SparseSetOfItemsets(AbstractCollection c, int items){
+    public SparseSetOfItemsets(AbstractCollection<? extends Itemset> c, 
+            int items){
         Itemset set;
-        Iterator it;
+        Iterator<? extends Itemset> it;
         int size = 0;
         
         this.items = items;
@@ -32,7 +39,7 @@ public class SparseSetOfItemsets{
         // get size for i
         it = c.iterator();
         while(it.hasNext()) {
-            set = (Itemset) it.next();
+            set = it.next();
             size += set.size();
         }
 
@@ -42,13 +49,46 @@ public class SparseSetOfItemsets{
         it = c.iterator();
         int ps = 0;
         while(it.hasNext()) {
-            set = (Itemset) it.next();
+            set = it.next();
             p[ps+1] = p[ps] + set.size();           
             for(int its = 0; its < set.size(); its++)
                 i[p[ps] + its] = set.get(its);
             ps++;
         }
-    
+
+        this.size = c.size();
+        this.incidences = i.length;
+    }
+
+    // append the itemsets of a batch (the number of items grows if the
+    // batch has more items)
+    public void append(SetOfItemsets batch) {
+        int batchSize = batch.size();
+        long newIncidences = incidences + batch.incidences();
+        if (newIncidences > Integer.MAX_VALUE) 
+            throw new IllegalArgumentException("too many incidences");
+
+        if (size + batchSize + 1 > p.length) {
+            int[] newP = new int[Math.max(size + batchSize + 1, 
+                    p.length * 2)];
+            System.arraycopy(p, 0, newP, 0, size + 1);
+            p = newP;
+        }
+        if (newIncidences > i.length) {
+            int[] newI = new int[(int) Math.min(Integer.MAX_VALUE, 
+                    Math.max(newIncidences, 2L * i.length))];
+            System.arraycopy(i, 0, newI, 0, incidences);
+            i = newI;
+        }
+
+        for (int t = 0; t < batchSize; t++) {
+            for (long pos = batch.start(t), end = batch.end(t); 
+                    pos < end; pos++) 
+                i[incidences++] = batch.item(pos);
+            p[++size] = incidences;
+        }
+
+        if (batch.items() > items) items = batch.items();
     }
 
     public Itemset getItemset(int index){
@@ -59,13 +99,37 @@ public class SparseSetOfItemsets{
         return new Itemset(someitems);
     }
 
-    public int size() { return (p.length-1); }
+    // cursor access without copying: the items of itemset index are
+    // item(pos) for start(index) <= pos < end(index) 
+    public long start(int index) { return p[index]; }
+    public long end(int index) { return p[index+1]; }
+    public int item(long pos) { return i[(int) pos]; }
+
+    public int size() { return size; }
     public int items() { return items; }
-    public int incidences() { return i.length; }
+    public long incidences() { return incidences; }
+
+    public int[] getI() { 
+        if (i.length != incidences) i = trim(i, incidences);
+        return i; 
+    }
+
+    public int[] getP() { 
+        if (p.length != size+1) p = trim(p, size+1);
+        return p; 
+    }
 
-    public int[] getI() { return i; }
-    public int[] getP() { return p; }
     public int getItems() { return items; }
+
+    // the arrays without trimming (only the used part is valid)
+    int[] backingI() { return i; }
+    int[] backingP() { return p; }
+
+    private static int[] trim(int[] array, int length) {
+        int[] newArray = new int[length];
+        System.arraycopy(array, 0, newArray, 0, length);
+        return newArray;
+    }
    
     public String toString()  {
         return("Sparse set of " + size() + " itemsets (" + items + " items)");
@@ -80,7 +144,7 @@ public class SparseSetOfItemsets{
         Itemset set2 = new Itemset(set1,11);
         Itemset set3 = new Itemset(items2);
 
-        java.util.Vector dbV = new java.util.Vector();
+        java.util.Vector<Itemset> dbV = new java.util.Vector<Itemset>();
         dbV.add(set1);
         dbV.add(set2);
         dbV.add(set3);
@@ -95,5 +159,14 @@ public class SparseSetOfItemsets{
         System.out.println(db.getItemset(1));
         System.out.println(db.getItemset(2));
 
+        System.out.print("cursor over itemset 1:");
+        for (long pos = db.start(1); pos < db.end(1); pos++)
+            System.out.print(" " + db.item(pos));
+        System.out.println();
+
+        db.append(db);
+        System.out.println("after appending itself: " + db + 
+                " with " + db.incidences() + " incidences");
+        System.out.println(db.getItemset(4));
     }
 }
@@ -0,0 +1,20 @@
+/*
+ * Selections (results of NBSelect) kept between mining runs. NBMiner
+ * replays the DFS on the stored selections and only counts itemsets whose
+ * selection is missing or out of date (see IncrementalNBMiner and
+ * StreamingNBMiner).
+ *
+ * This code is distributed under the GPL2
+ */
+
+public interface StoredSelections {
+
+    // the stored selection of l or null if there is none or it is out of
+    // date
+    public Selection getSelection(Itemset l);
+
+    public void setSelection(Itemset l, Selection cs);
+
+    // (cleared) target is set to the tidset of l in the database
+    public void tidset(Itemset l, TidList target);
+}
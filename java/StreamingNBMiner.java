@@ -0,0 +1,190 @@
+/*
+ * NB-frequent itemsets (or NB-precise rules) over the last transactions of
+ * a stream (see TransactionWindow). Transactions are added one at a time
+ * or in micro-batches; refresh() mines the current window. Like
+ * IncrementalNBMiner, a refresh replays the DFS on the selections of the
+ * last refresh and only recounts itemsets which occur in a transaction
+ * added or evicted since (the other selections cannot have changed), so
+ * the counting work is proportional to the changed subtrees and not to the
+ * window size. The result is the same as mining the window from scratch.
+ *
+ * The NB model parameters (a, k, n) and the other mining parameters are
+ * fixed for the lifetime of the miner.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class StreamingNBMiner implements StoredSelections {
+
+    private TransactionWindow window;
+    private double pi;
+    private double theta;
+    private double a;
+    private double k;
+    private int n;
+    private int maxlen;
+    private boolean rules;
+
+    private NBMiner miner = new NBMiner();
+
+    // selections of the last refresh and the selections reused or
+    // recomputed by the current refresh (itemsets which are not visited
+    // are dropped)
+    private SelectionStore previous = new SelectionStore();
+    private SelectionStore current;
+
+    // window at the last refresh
+    private int lastStart = 0;
+    private int lastEnd = 0;
+
+    // selections recomputed/reused in the last refresh
+    private int recounted;
+    private int replayed;
+
+    public StreamingNBMiner(int items, int windowSize,
+            double pi, double theta,
+            double a, double k, int n, int maxlen,
+            boolean rules){
+        this.window = new TransactionWindow(items, windowSize);
+        this.pi = pi;
+        this.theta = theta;
+        this.a = a;
+        this.k = k;
+        this.n = n;
+        this.maxlen = maxlen;
+        this.rules = rules;
+    }
+
+    public void add(int[] transaction) {
+        window.add(transaction, transaction.length);
+        checkEvicted();
+    }
+
+    // add a micro-batch of transactions
+    public void add(SetOfItemsets batch) {
+        window.add(batch);
+        checkEvicted();
+    }
+
+    // mine the current window (the limits and metrics of getMiner() are
+    // used; mining is always sequential)
+    public R_result refresh(boolean verbatim, boolean debug) {
+        // a sink which raises the precision threshold (top-N) would change
+        // the selections
+        CSCResultSink sink = new CSCResultSink(window.items(), rules);
+
+        recounted = 0;
+        replayed = 0;
+        current = new SelectionStore();
+        miner.setIncremental(this);
+        try {
+            miner.mine(window, pi, theta, a, k, n, maxlen, rules, verbatim,
+                    debug, sink);
+        }finally{
+            miner.setIncremental(null);
+        }
+
+        // unvisited itemsets are recounted when they are visited again
+        previous = current;
+        current = null;
+        lastStart = window.windowStart();
+        lastEnd = window.windowEnd();
+        release();
+
+        R_result result = sink.getResult();
+        result.setComplete(miner.isComplete());
+        return result;
+    }
+
+    public TransactionWindow getWindow() {
+        return window;
+    }
+
+    public NBMiner getMiner() {
+        return miner;
+    }
+
+    public int getRecounted() {
+        return recounted;
+    }
+
+    public int getReplayed() {
+        return replayed;
+    }
+
+    // number of stored selections
+    public int getStored() {
+        return previous.size();
+    }
+
+
+    // out of date if l occurs in a transaction evicted or added since the
+    // last refresh
+    public Selection getSelection(Itemset l) {
+        int id = previous.getTable().find(l);
+        Selection cs = previous.get(id);
+        if (cs == null) return null;
+
+        TidList[] tidlists = window.getTidlists();
+        if (TidList.intersect(tidlists, l, lastStart, window.windowStart(),
+                    null) ||
+                TidList.intersect(tidlists, l, lastEnd, Integer.MAX_VALUE,
+                    null))
+            return null;
+
+        replayed++;
+        current.set(current.getTable().add(l), cs, window.windowEnd());
+        return cs;
+    }
+
+    public void setSelection(Itemset l, Selection cs) {
+        recounted++;
+        current.set(current.getTable().add(l), cs, window.windowEnd());
+    }
+
+    // the intersection of the tid-lists of the items in l within the window
+    public void tidset(Itemset l, TidList target) {
+        target.clear();
+        TidList.intersect(window.getTidlists(), l, window.windowStart(),
+                Integer.MAX_VALUE, target);
+    }
+
+
+    // if more transactions than the window size were evicted since the last
+    // refresh, all selections are recomputed anyway and the evicted
+    // transactions are released
+    private void checkEvicted() {
+        if (window.evicted() < window.getCapacity()) return;
+
+        previous = new SelectionStore();
+        release();
+    }
+
+    // release the window (the window of the last refresh is rebased with
+    // the tids)
+    private void release() {
+        window.release();
+        lastStart -= window.getRebased();
+        lastEnd -= window.getRebased();
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        int[][] stream = {{0,1,2}, {0,1}, {1,2}, {0,1,2}, {0,2}, {0,1,2},
+            {0,1}, {2}, {0,1,2}, {1,2}};
+
+        StreamingNBMiner streaming = new StreamingNBMiner(3, 6,
+                0.5, 0.5, 1.0, 1.0, 6, 3, false);
+
+        for (int t = 0; t < stream.length; t++) {
+            streaming.add(stream[t]);
+            if (t < 5) continue;
+
+            R_result result = streaming.refresh(false, false);
+            System.out.println(streaming.getWindow() + ": " +
+                    result.getItems().size() + " itemsets, recounted " +
+                    streaming.getRecounted() + ", replayed " +
+                    streaming.getReplayed());
+        }
+    }
+}
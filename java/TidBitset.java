@@ -0,0 +1,119 @@
+/*
+ * Set of transaction IDs as a bitset (one bit per transaction) for dense
+ * databases. Counting is done by word-level AND and popcount. Only the
+ * range of words between the first and the last set bit is scanned.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class TidBitset extends Tidset {
+
+    private long[] words;
+    private int size;   // number of set bits
+    private int lo;     // first word with a set bit
+    private int hi;     // last word with a set bit + 1
+
+    public TidBitset(int transactions) {
+        this.words = new long[(transactions + 63) >>> 6];
+        this.size = 0;
+        this.lo = 0;
+        this.hi = 0;
+    }
+
+    // tids have to be set in increasing order
+    public void set(int tid) {
+        int w = tid >>> 6;
+        if (size == 0) lo = w;
+        hi = w + 1;
+        words[w] |= 1L << (tid & 63);
+        size++;
+    }
+
+    public boolean contains(int tid) {
+        return (words[tid >>> 6] & (1L << (tid & 63))) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // number of words which are scanned by andCount
+    public int range() {
+        return hi - lo;
+    }
+
+    // this = a AND b 
+    public void and(TidBitset a, TidBitset b) {
+        int from = Math.max(a.lo, b.lo);
+        int to = Math.min(a.hi, b.hi);
+
+        // clear what is left from an earlier use
+        for (int w = lo; w < hi; w++) words[w] = 0L;
+
+        size = 0;
+        lo = 0;
+        hi = 0;
+        for (int w = from; w < to; w++) {
+            long word = a.words[w] & b.words[w];
+            if (word == 0L) continue;
+            if (size == 0) lo = w;
+            hi = w + 1;
+            words[w] = word;
+            size += Long.bitCount(word);
+        }
+    }
+
+    // |this AND b|
+    public int andCount(TidBitset b) {
+        int from = Math.max(lo, b.lo);
+        int to = Math.min(hi, b.hi);
+        int count = 0;
+        for (int w = from; w < to; w++) 
+            count += Long.bitCount(words[w] & b.words[w]);
+        return count;
+    }
+
+    // add the tids to list (in increasing order)
+    public void toTidList(TidList list) {
+        for (int w = lo; w < hi; w++) {
+            long word = words[w];
+            while (word != 0L) {
+                list.add((w << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    public Tidset copy() {
+        TidBitset set = new TidBitset(words.length << 6);
+        System.arraycopy(words, lo, set.words, lo, hi - lo);
+        set.size = size;
+        set.lo = lo;
+        set.hi = hi;
+        return set;
+    }
+
+    public String toString() {
+        TidList list = new TidList(size);
+        toTidList(list);
+        return list.toString();
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        TidBitset a = new TidBitset(200);
+        TidBitset b = new TidBitset(200);
+        for (int i = 0; i < 200; i += 3) a.set(i);
+        for (int i = 0; i < 200; i += 5) b.set(i);
+
+        System.out.println("a: " + a.size() + " tids");
+        System.out.println("b: " + b.size() + " tids");
+        System.out.println("|a and b|: " + a.andCount(b));
+
+        TidBitset c = new TidBitset(200);
+        c.and(a, b);
+        System.out.println("a and b: " + c);
+        System.out.println("contains 15? " + c.contains(15));
+        System.out.println("contains 20? " + c.contains(20));
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Growable list of transaction IDs backed by a primitive int array
+ * (replaces Vector of Integer for tid-lists). Tids are added in increasing
+ * order.
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.util.Arrays;
+
+public class TidList extends Tidset {
+
+    private int[] tids;
+    private int size;
+
+    public TidList() {
+        this(16);
+    }
+
+    public TidList(int capacity) {
+        if (capacity < 1) capacity = 1;
+        this.tids = new int[capacity];
+        this.size = 0;
+    }
+
+    public void add(int tid) {
+        if (size == tids.length) {
+            int[] newTids = new int[tids.length * 2];
+            System.arraycopy(tids, 0, newTids, 0, size);
+            tids = newTids;
+        }
+        tids[size++] = tid;
+    }
+
+    public int get(int index) {
+        return tids[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // keeps the array so the list can be reused
+    public void clear() {
+        size = 0;
+    }
+
+    // copy with a right-sized array
+    public Tidset copy() {
+        TidList list = new TidList(size);
+        System.arraycopy(tids, 0, list.tids, 0, size);
+        list.size = size;
+        return list;
+    }
+
+    // the backing array (only the first size() entries are valid)
+    public int[] getTids() {
+        return tids;
+    }
+
+    // allocated bytes
+    public long bytes() {
+        return 4L * tids.length;
+    }
+
+    // remove the first count tids
+    public void removeFirst(int count) {
+        System.arraycopy(tids, count, tids, 0, size - count);
+        size -= count;
+    }
+
+    // subtract offset from all tids
+    public void rebase(int offset) {
+        for (int i = 0; i < size; i++) tids[i] -= offset;
+    }
+
+    // position of the first tid >= tid
+    public int position(int tid) {
+        int pos = Arrays.binarySearch(tids, 0, size, tid);
+        if (pos < 0) pos = -pos - 1;
+        return pos;
+    }
+
+    // intersect the tid-lists of the items in l within [from, to). The 
+    // common tids are added to target; without a target, only check if 
+    // there is a common tid.
+    public static boolean intersect(TidList[] tidlists, Itemset l,
+            int from, int to, TidList target) {
+        return intersect(tidlists, l.getItems(), l.size(), new int[l.size()],
+                from, to, target);
+    }
+
+    // as above for the items l[0..size-1] with cursor (of at least size
+    // ints) as scratch space, so nothing is allocated
+    public static boolean intersect(TidList[] tidlists, int[] l, int size,
+            int[] cursor, int from, int to, TidList target) {
+        // go through the shortest tid-list
+        int shortest = 0;
+        for (int j = 0; j < size; j++) {
+            TidList list = tidlists[l[j]];
+            cursor[j] = list.position(from);
+            if (list.size() - cursor[j] <
+                    tidlists[l[shortest]].size() - cursor[shortest])
+                shortest = j;
+        }
+
+        TidList first = tidlists[l[shortest]];
+        boolean found = false;
+
+        for (int c = cursor[shortest]; c < first.size(); c++) {
+            int tid = first.get(c);
+            if (tid >= to) return found;
+            boolean common = true;
+
+            for (int j = 0; j < size && common; j++) {
+                if (j == shortest) continue;
+                TidList list = tidlists[l[j]];
+
+                while (cursor[j] < list.size() && list.get(cursor[j]) < tid)
+                    cursor[j]++;
+                if (cursor[j] == list.size()) return found;
+                common = list.get(cursor[j]) == tid;
+            }
+
+            if (!common) continue;
+            if (target == null) return true;
+            target.add(tid);
+            found = true;
+        }
+
+        return found;
+    }
+
+    public String toString() {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) buffer.append(", ");
+            buffer.append(tids[i]);
+        }
+        buffer.append("]");
+        return buffer.toString();
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        TidList list = new TidList(2);
+        for (int i = 0; i < 10; i++) list.add(i * 3);
+
+        System.out.println("list: " + list);
+        System.out.println("size: " + list.size());
+        System.out.println("get(4): " + list.get(4));
+
+        System.out.println("position(10): " + list.position(10));
+        list.removeFirst(3);
+        System.out.println("removeFirst(3): " + list);
+
+        TidList[] tidlists = {list, new TidList(), new TidList()};
+        for (int i = 0; i < 30; i += 2) tidlists[1].add(i);
+        System.out.println("intersect: " + list + " and " + tidlists[1]);
+        TidList common = new TidList();
+        intersect(tidlists, new Itemset(new int[] {0, 1}), 0, 
+                Integer.MAX_VALUE, common);
+        System.out.println("-> " + common);
+        System.out.println("any in [13,18)? " + intersect(tidlists, 
+                    new Itemset(new int[] {0, 1}), 13, 18, null));
+        System.out.println("with empty list? " + intersect(tidlists, 
+                    new Itemset(new int[] {0, 2}), 0, Integer.MAX_VALUE, 
+                    null));
+
+        list.clear();
+        System.out.println("after clear, isEmpty? " + list.isEmpty());
+    }
+}
@@ -0,0 +1,19 @@
+/*
+ * Vertical representation of the set of transactions (tids) which contain
+ * an itemset.
+ *
+ * This code is distributed under the GPL2
+ */
+
+public abstract class Tidset {
+
+    // number of transactions
+    public abstract int size();
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // independent copy (pooled tidsets are reused)
+    public abstract Tidset copy();
+}
@@ -0,0 +1,184 @@
+/*
+ * Result sink which keeps only the n itemsets/rules with the highest
+ * precision in a bounded priority queue. Once the queue is full, a pattern
+ * is only accepted if its precision is larger than the smallest precision
+ * in the queue (minPrecision). The miner does not prune with this
+ * threshold: the precision of an itemset comes from the parent which makes
+ * it NB-frequent first, so pruning would change the precision of the
+ * itemsets found later. The result is the n most precise patterns of the
+ * full run.
+ *
+ * Patterns with fewer than minlen items are neither ranked nor returned.
+ * In particular 1-itemsets are never ranked: all items are selected for
+ * the empty set with precision 1, so they would fill the queue.
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+public class TopNResultSink implements ResultSink {
+
+    // orders associations by precision
+    private static final Comparator<Association> BY_PRECISION = 
+        new Comparator<Association>() {
+            public int compare(Association a1, Association a2) {
+                return Double.compare(a1.getPrecision(), a2.getPrecision());
+            }
+        };
+
+    private int n;
+    private int items;
+    private boolean rules;
+    private int minlen;     // items of an itemset or lhs + rhs of a rule
+
+    // the association with the smallest precision is the head
+    private PriorityQueue<Association> queue;
+
+    public TopNResultSink(int n, int items, boolean rules) {
+        this(n, items, rules, 1);
+    }
+
+    // only rank patterns with at least minlen items (itemsets: at least 2)
+    public TopNResultSink(int n, int items, boolean rules, int minlen) {
+        this.n = n;
+        this.items = items;
+        this.rules = rules;
+        this.minlen = rules ? minlen : Math.max(2, minlen);
+        queue = new PriorityQueue<Association>(Math.max(n, 1), BY_PRECISION);
+    }
+
+    public void addItemset(int[] theItems, int length, double precision) {
+        if (length < minlen || !accept(precision)) return;
+
+        int[] someitems = new int[length];
+        System.arraycopy(theItems, 0, someitems, 0, length);
+        add(new Itemset(someitems, precision));
+    }
+
+    public void addRule(int[] lhs, int length, int rhs, double precision) {
+        if (length + 1 < minlen || !accept(precision)) return;
+
+        int[] someitems = new int[length];
+        System.arraycopy(lhs, 0, someitems, 0, length);
+        add(new Rule(new Itemset(someitems), new Itemset(rhs), precision));
+    }
+
+    public int size() {
+        return queue.size();
+    }
+
+    public double minPrecision() {
+        if (queue.size() < n) return Double.NEGATIVE_INFINITY;
+        return queue.peek().getPrecision();
+    }
+
+    // the associations in decreasing order of precision
+    public R_result getResult() {
+        Association[] associations = 
+            queue.toArray(new Association[queue.size()]);
+        Arrays.sort(associations, BY_PRECISION);
+
+        CSCResultSink sink = new CSCResultSink(items, rules);
+        for (int i = associations.length - 1; i >= 0; i--) {
+            if (rules) {
+                Rule rule = (Rule) associations[i];
+                sink.addRule(rule.getLhs().getItems(), rule.getLhs().size(),
+                        rule.getRhs().get(0), rule.getPrecision());
+            }else{
+                Itemset itemset = (Itemset) associations[i];
+                sink.addItemset(itemset.getItems(), itemset.size(), 
+                        itemset.getPrecision());
+            }
+        }
+
+        return sink.getResult();
+    }
+
+    // ties are resolved in favor of the association found first
+    private boolean accept(double precision) {
+        return n > 0 && (queue.size() < n || precision > minPrecision());
+    }
+
+    private void add(Association association) {
+        if (queue.size() == n) queue.poll();
+        queue.add(association);
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        TopNResultSink sink = new TopNResultSink(3, 50, false);
+        int[] items = {1, 3, 5, 18, 44};
+        double[] precision = {0.5, 0.9, 0.7, 0.95, 0.6, 0.9};
+        for (int i = 0; i < precision.length; i++) {
+            sink.addItemset(items, 2 + i % 4, precision[i]);
+            System.out.println("added " + precision[i] + 
+                    ", min precision: " + sink.minPrecision());
+        }
+
+        R_result result = sink.getResult();
+        for (int i = 0; i < result.getPrecision().length; i++) 
+            System.out.println(result.getItems().getItemset(i) + 
+                    " precision " + result.getPrecision()[i]);
+
+        // top-N of a mining run are the n most precise itemsets with at 
+        // least 2 items of the full run
+        int size = 2000;
+        int[] i = new int[size * 6];
+        int[] p = new int[size + 1];
+        int pos = 0;
+        int seed = 42;
+        for (int t = 0; t < size; t++) {
+            for (int item = 0; item < 30; item++) {
+                seed = seed * 1103515245 + 12345;
+                int r = (seed >>> 8) % 100;
+                // items 0-3 and 10-12 co-occur
+                boolean planted = (item < 4 && t % 5 == 0) || 
+                    (item >= 10 && item < 13 && t % 7 == 0);
+                if (planted || r < 3) i[pos++] = item;
+                if (pos == i.length) break;
+            }
+            p[t+1] = pos;
+        }
+        int[] theI = new int[pos];
+        System.arraycopy(i, 0, theI, 0, pos);
+        SparseSetOfItemsets db = new SparseSetOfItemsets(theI, p, 30);
+
+        NBEstimator estimator = new NBEstimator(db, 1);
+        estimator.estimate(0.0, true);
+        double k = estimator.getK();
+        double a = estimator.getA();
+        int n = estimator.getN();
+
+        R_result full = new NBMiner().R_mine(db, 0.5, 0.5, a, k, n, 4, 
+                false, false, false);
+        double[] ranked = new double[full.getPrecision().length];
+        int nRanked = 0;
+        for (int x = 0; x < ranked.length; x++) 
+            if (full.getItems().getItemset(x).size() >= 2) 
+                ranked[nRanked++] = full.getPrecision()[x];
+        Arrays.sort(ranked, 0, nRanked);
+
+        NBMiner miner = new NBMiner();
+        miner.setTopN(10);
+        double[] top = miner.R_mine(db, 0.5, 0.5, a, k, n, 4, false, 
+                false, false).getPrecision();
+        boolean same = top.length == Math.min(10, nRanked);
+        for (int x = 0; same && x < top.length; x++) 
+            same = top[x] == ranked[nRanked - 1 - x];
+        System.out.println("top-10 of " + nRanked + 
+                " itemsets with at least 2 items: " + 
+                (same ? "same as the full run" : "DIFFERS"));
+
+        // with two threads
+        double[] parallel = miner.R_mine(db, 0.5, 0.5, a, k, n, 4, false, 
+                false, false, 2).getPrecision();
+        same = parallel.length == top.length;
+        for (int x = 0; same && x < top.length; x++) 
+            same = parallel[x] == top[x];
+        System.out.println("top-10 with 2 threads: " + 
+                (same ? "same" : "DIFFERS"));
+    }
+}
@@ -0,0 +1,268 @@
+/*
+ * Sliding window over the last transactions of a stream. Transactions are
+ * numbered in the order they arrive (tids are sequence numbers) and kept
+ * in a ring buffer together with per-item counts and tid-lists. When the
+ * window is full, adding a transaction evicts the oldest one. Evicted
+ * transactions stay in the tid-lists until release() is called, so the
+ * changes since the last release can still be checked. The tid-lists may
+ * also contain older tids (use TidList.position to skip them).
+ *
+ * As a SetOfItemsets, the transaction with tid t is read with start(t) and
+ * end(t) for windowStart() <= t < windowEnd() (and not 0..size()-1).
+ *
+ * Tids are ints. Once they reach REBASE, release() subtracts a multiple of
+ * the ring size from all tids (see getRebased), so an unbounded stream
+ * does not overflow as long as release() is called (StreamingNBMiner does).
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.util.Arrays;
+
+public class TransactionWindow implements SetOfItemsets {
+
+    // release() rebases the tids once they reach this
+    private static final int REBASE = 1 << 30;
+
+    private int items;
+    private int capacity;
+    private int rebase;
+
+    // transaction tid is ring[tid & (ring.length - 1)] for kept <= tid < end
+    // (the length of ring is a power of 2)
+    private int[][] ring = new int[16][];
+    private int kept = 0;
+    private int start = 0;
+    private int end = 0;
+    private long incidences = 0;
+
+    // subtracted from the tids by the last release()
+    private int rebased = 0;
+
+    // counts and tid-lists per item
+    private int[] counts;
+    private TidList[] tidlists;
+
+    public TransactionWindow(int items, int capacity) {
+        this(items, capacity, REBASE);
+    }
+
+    // rebase the tids already at rebase (for tests)
+    TransactionWindow(int items, int capacity, int rebase) {
+        if (capacity < 1)
+            throw new IllegalArgumentException("window size must be > 0");
+
+        this.items = items;
+        this.capacity = capacity;
+        this.rebase = rebase;
+        this.counts = new int[items];
+        this.tidlists = new TidList[items];
+        for (int item = 0; item < items; item++)
+            tidlists[item] = new TidList();
+    }
+
+    // add a transaction (the items are sorted and duplicates dropped)
+    public void add(int[] transaction, int length) {
+        int[] t = new int[length];
+        System.arraycopy(transaction, 0, t, 0, length);
+        Arrays.sort(t);
+
+        int size = 0;
+        for (int j = 0; j < length; j++) {
+            if (t[j] < 0 || t[j] >= items)
+                throw new IllegalArgumentException("unknown item: " + t[j]);
+            if (size == 0 || t[size-1] != t[j]) t[size++] = t[j];
+        }
+        if (size < length) {
+            int[] newT = new int[size];
+            System.arraycopy(t, 0, newT, 0, size);
+            t = newT;
+        }
+
+        if (end == Integer.MAX_VALUE)
+            throw new IllegalStateException(
+                    "tids overflow (the window is never released)");
+        if (end - kept == ring.length) grow();
+        ring[end & (ring.length - 1)] = t;
+
+        for (int j = 0; j < t.length; j++) {
+            counts[t[j]]++;
+            tidlists[t[j]].add(end);
+        }
+        incidences += t.length;
+        end++;
+
+        if (end - start > capacity) evict();
+    }
+
+    // add the transactions of a batch
+    public void add(SetOfItemsets batch) {
+        int[] t = new int[16];
+
+        for (int index = 0; index < batch.size(); index++) {
+            int length = (int) (batch.end(index) - batch.start(index));
+            if (t.length < length) t = new int[Math.max(length, t.length*2)];
+
+            for (int j = 0; j < length; j++)
+                t[j] = batch.item(batch.start(index) + j);
+            add(t, length);
+        }
+    }
+
+    // remove the evicted transactions from the ring buffer and tid-lists
+    // (and rebase the tids if they are large)
+    public void release() {
+        rebased = 0;
+
+        for (int tid = kept; tid < start; tid++) {
+            int[] t = ring[tid & (ring.length - 1)];
+            ring[tid & (ring.length - 1)] = null;
+
+            for (int j = 0; j < t.length; j++) {
+                TidList list = tidlists[t[j]];
+
+                // the evicted tids are at the front of the list. They are
+                // only removed once they are at least half of it (tids
+                // before the window are skipped by position()).
+                int evicted = list.position(start);
+                if (evicted > 0 && 2 * evicted >= list.size()) 
+                    list.removeFirst(evicted);
+            }
+        }
+        kept = start;
+
+        if (end >= rebase) rebase();
+    }
+
+    // subtract a multiple of the ring size (so the transactions keep their
+    // place in the ring) from all tids
+    private void rebase() {
+        int offset = kept & ~(ring.length - 1);
+        if (offset == 0) return;
+
+        for (int item = 0; item < items; item++) {
+            TidList list = tidlists[item];
+            list.removeFirst(list.position(start));
+            list.rebase(offset);
+        }
+        kept -= offset;
+        start -= offset;
+        end -= offset;
+        rebased = offset;
+    }
+
+    // the offset subtracted from all tids by the last release() (0 if the
+    // tids were not rebased)
+    public int getRebased() {
+        return rebased;
+    }
+
+    // first tid in the window
+    public int windowStart() {
+        return start;
+    }
+
+    // tid of the next transaction
+    public int windowEnd() {
+        return end;
+    }
+
+    // number of evicted transactions which are not released
+    public int evicted() {
+        return start - kept;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // number of transactions in the window containing item
+    public int count(int item) {
+        return counts[item];
+    }
+
+    // tid-lists per item (including the evicted tids which are not
+    // released)
+    TidList[] getTidlists() {
+        return tidlists;
+    }
+
+    public int size() { return end - start; }
+    public int items() { return items; }
+    public long incidences() { return incidences; }
+
+    // positions are the tid in the upper and the index in the lower 32 bits
+    public long start(int tid) { return (long) tid << 32; }
+    public long end(int tid) {
+        return ((long) tid << 32) + ring[tid & (ring.length - 1)].length;
+    }
+    public int item(long pos) {
+        return ring[(int) (pos >>> 32) & (ring.length - 1)][(int) pos];
+    }
+
+    private void evict() {
+        int[] t = ring[start & (ring.length - 1)];
+        for (int j = 0; j < t.length; j++) counts[t[j]]--;
+        incidences -= t.length;
+        start++;
+    }
+
+    private void grow() {
+        int[][] newRing = new int[ring.length * 2][];
+        for (int tid = kept; tid < end; tid++)
+            newRing[tid & (newRing.length - 1)] = 
+                ring[tid & (ring.length - 1)];
+        ring = newRing;
+    }
+
+    public String toString() {
+        StringBuffer buffer = new StringBuffer();
+        buffer.append("window [" + start + ", " + end + "):");
+        for (int tid = start; tid < end; tid++) {
+            buffer.append(" {");
+            for (long pos = start(tid); pos < end(tid); pos++) {
+                if (pos > start(tid)) buffer.append(",");
+                buffer.append(item(pos));
+            }
+            buffer.append("}");
+        }
+        return buffer.toString();
+    }
+
+    // tests
+    public static void main(String[] arg) {
+        TransactionWindow window = new TransactionWindow(4, 3);
+        window.add(new int[] {2, 0, 1}, 3);
+        window.add(new int[] {1, 1, 3}, 3);
+        window.add(new int[] {0, 3}, 2);
+        System.out.println(window);
+
+        window.add(new int[] {2}, 1);
+        System.out.println(window);
+        System.out.println("evicted: " + window.evicted() +
+                ", count(0): " + window.count(0) +
+                ", tid-list of 0: " + window.getTidlists()[0]);
+
+        window.release();
+        System.out.println("released, tid-list of 0: " +
+                window.getTidlists()[0] + ", incidences: " +
+                window.incidences());
+
+        for (int i = 0; i < 40; i++) window.add(new int[] {i % 4}, 1);
+        window.release();
+        System.out.println(window);
+        System.out.println("tid-list of 3: " + window.getTidlists()[3]);
+
+        // tids are rebased by release() once they reach 100
+        TransactionWindow small = new TransactionWindow(4, 3, 100);
+        int rebased = 0;
+        for (int i = 0; i < 1000; i++) {
+            small.add(new int[] {i % 4, (i + 1) % 4}, 2);
+            small.release();
+            rebased += small.getRebased();
+        }
+        System.out.println("after 1000 transactions (rebased by " + 
+                rebased + "): " + small + ", tid-list of 0: " + 
+                small.getTidlists()[0]);
+    }
+}
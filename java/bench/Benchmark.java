@@ -0,0 +1,80 @@
+/*
+ * Minimal benchmark harness: warmup iterations followed by measured
+ * iterations. Each iteration repeats the benchmark until it ran for at 
+ * least a minimum time and reports the time per operation. (We do not use
+ * JMH so the benchmarks build with the plain javac Makefile and the jar
+ * keeps having no dependencies.)
+ *
+ * This code is distributed under the GPL2
+ */
+
+public abstract class Benchmark {
+
+    // results of run() are added here so the JIT cannot drop the work
+    public static long checksum = 0;
+
+    private String name;
+
+    protected Benchmark(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // one repetition of the benchmark; returns a value depending on the 
+    // work done 
+    public abstract long run();
+
+    // operations per repetition (for the time per operation)
+    public int operations() {
+        return 1;
+    }
+
+    // returns {mean, standard deviation} of the nanoseconds per operation
+    public double[] measure(int warmup, int iterations, long minNanos) {
+        for (int w = 0; w < warmup; w++) iteration(minNanos);
+
+        double[] time = new double[iterations];
+        double mean = 0.0;
+        for (int it = 0; it < iterations; it++) {
+            time[it] = iteration(minNanos);
+            mean += time[it];
+        }
+        mean /= iterations;
+
+        double var = 0.0;
+        for (int it = 0; it < iterations; it++) 
+            var += (time[it] - mean) * (time[it] - mean);
+        if (iterations > 1) var /= iterations - 1;
+
+        return new double[] {mean, Math.sqrt(var)};
+    }
+
+    private double iteration(long minNanos) {
+        long repetitions = 0;
+        long start = System.nanoTime();
+        long time;
+
+        do {
+            checksum += run();
+            repetitions++;
+            time = System.nanoTime() - start;
+        } while (time < minNanos);
+
+        return (double) time / (repetitions * operations());
+    }
+
+    // ns/op formatted with a sensible unit 
+    public static String format(double nanos) {
+        if (nanos >= 1e9) return round(nanos / 1e9) + " s";
+        if (nanos >= 1e6) return round(nanos / 1e6) + " ms";
+        if (nanos >= 1e3) return round(nanos / 1e3) + " us";
+        return round(nanos) + " ns";
+    }
+
+    private static String round(double x) {
+        return String.valueOf(Math.round(x * 100) / 100.0);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Benchmark for compressed tid-lists (see CompressedTidList) on
+ * Agrawal-like synthetic data (1000 items, 20000 transactions) scaled up
+ * in the number of transactions: the peak bytes of the tid-lists kept by
+ * the DFS (tidlist_bytes of the mining metrics) and the mining time with
+ * plain and compressed tid-lists.
+ *
+ * usage: java CompressedTidListBenchmark [scale,...]
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class CompressedTidListBenchmark {
+
+    public static void main(String[] arg) {
+        String[] scales = (arg.length > 0 ? arg[0] : "1,10,100").split(",");
+
+        for (int s = 0; s < scales.length; s++) {
+            int scale = Integer.parseInt(scales[s]);
+            SparseSetOfItemsets db = new SyntheticData(1000, 20000 * scale,
+                    10, 1000, 4, 42).generate();
+            double[] param = SyntheticData.parameters(db);
+
+            System.out.println("scale " + scale + ": " + db + ", " +
+                    db.incidences() + " incidences");
+
+            int[] representations = {NBMiner.TIDLISTS, NBMiner.COMPRESSED};
+            for (int r = 0; r < representations.length; r++) {
+                NBMiner miner = new NBMiner();
+                miner.setRepresentation(representations[r]);
+                miner.setMetrics(true);
+
+                System.gc();
+                long start = System.nanoTime();
+                R_result result = miner.R_mine(db, 0.99, 0.5, param[1],
+                        param[0], (int) param[2], 5, false, false, false);
+                long time = System.nanoTime() - start;
+
+                String[] names = miner.getMetrics().getNames();
+                double[] values = miner.getMetrics().getValues();
+                double bytes = 0.0;
+                for (int i = 0; i < names.length; i++)
+                    if (names[i].equals("tidlist_bytes")) bytes = values[i];
+
+                System.out.println("  " + (r == 0 ? "plain:     " :
+                            "compressed:") + " " +
+                        result.getPrecision().length + " itemsets in " +
+                        time / 1000000 + " ms, tid-lists " +
+                        Math.round(bytes / (1024 * 1024) * 10) / 10.0 +
+                        " MB");
+            }
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Benchmarks for the hot paths of NBMiner on Agrawal-like synthetic data
+ * (see SyntheticData) at several scales: 
+ *
+ *   getItemset  SparseSetOfItemsets.getItemset per transaction
+ *   itemset     Itemset construction (l + {item}) and hashCode
+ *   nbselect    NBSelect for the first-level nodes of frequent items
+ *   dfs         the DFS (NBMiner.run) without building the result
+ *   r_mine      end-to-end R_mine
+ *
+ * The small scale is similar to the Agrawal data set.
+ *
+ * usage: java MiningBenchmark [scale,...|all] [benchmark,...|all]
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.util.Arrays;
+
+public class MiningBenchmark {
+
+    // name, items, transactions, avg. transaction length, patterns, 
+    // avg. pattern length, maxlen
+    private static final Object[][] SCALES = {
+        {"small",  new int[] {1000,   20000, 10, 1000,  4, 5}},
+        {"medium", new int[] {5000,   50000, 10, 5000,  4, 5}},
+        {"large",  new int[] {20000, 200000, 10, 20000, 4, 5}},
+        {"dense",  new int[] {100,    20000, 32, 100,   4, 3}},
+    };
+
+    private static final String[] BENCHMARKS = 
+        {"getItemset", "itemset", "nbselect", "dfs", "r_mine"};
+
+    private static final double PI = 0.99;
+    private static final double THETA = 0.5;
+
+    // number of frequent items used for nbselect
+    private static final int SELECT_ITEMS = 100;
+
+    public static void main(String[] arg) {
+        String scales = arg.length > 0 ? arg[0] : "small,medium,dense";
+        String benchmarks = arg.length > 1 ? arg[1] : "all";
+
+        System.out.println("scale\titems\ttrans\tdensity\tbenchmark\t" + 
+                "time/op\t(sd)");
+
+        for (int s = 0; s < SCALES.length; s++) {
+            String scale = (String) SCALES[s][0];
+            if (!selected(scales, scale)) continue;
+
+            int[] def = (int[]) SCALES[s][1];
+            SparseSetOfItemsets db = new SyntheticData(def[0], def[1], 
+                    def[2], def[3], def[4], 42).generate();
+            double[] param = SyntheticData.parameters(db);
+            int maxlen = def[5];
+
+            String prefix = scale + "\t" + db.items() + "\t" + db.size() + 
+                "\t" + Math.round(1e4 * db.incidences() / 
+                        ((double) db.size() * db.items())) / 1e4 + "\t";
+
+            for (int b = 0; b < BENCHMARKS.length; b++) {
+                if (!selected(benchmarks, BENCHMARKS[b])) continue;
+
+                Benchmark benchmark = create(BENCHMARKS[b], db, param, maxlen);
+                double[] time = benchmark.measure(3, 5, 500000000L);
+
+                System.out.println(prefix + benchmark.getName() + "\t" + 
+                        Benchmark.format(time[0]) + "\t(" + 
+                        Benchmark.format(time[1]) + ")");
+            }
+        }
+    }
+
+    private static boolean selected(String list, String name) {
+        if (list.equals("all")) return true;
+        return Arrays.asList(list.split(",")).contains(name);
+    }
+
+    private static Benchmark create(String name, 
+            final SparseSetOfItemsets db, final double[] param, 
+            final int maxlen) {
+        final int transactions = Math.min(db.size(), 10000);
+
+        if (name.equals("getItemset")) return new Benchmark(name) {
+            public long run() {
+                long sum = 0;
+                for (int t = 0; t < transactions; t++) 
+                    sum += db.getItemset(t).size();
+                return sum;
+            }
+
+            public int operations() { return transactions; }
+        };
+
+        if (name.equals("itemset")) return new Benchmark(name) {
+            public long run() {
+                long sum = 0;
+                for (int t = 0; t < transactions; t++) {
+                    int length = db.getP()[t+1] - db.getP()[t];
+                    if (length < 2) continue;
+
+                    int[] items = new int[Math.min(length - 1, 3)];
+                    System.arraycopy(db.getI(), db.getP()[t], items, 0, 
+                            items.length);
+                    Itemset l = new Itemset(items);
+                    Itemset lNew = new Itemset(l, db.getI()[db.getP()[t+1]-1]);
+                    sum += lNew.hashCode();
+                }
+                return sum;
+            }
+
+            public int operations() { return transactions; }
+        };
+
+        if (name.equals("nbselect")) return new NBSelectBenchmark(db, param);
+
+        if (name.equals("dfs")) return new Benchmark(name) {
+            public long run() {
+                NBMiner miner = new NBMiner();
+                CSCResultSink sink = new CSCResultSink(db.items(), false);
+                miner.prepare(db, PI, THETA, param[1], param[0], 
+                        (int) param[2], maxlen, false, false, false, sink);
+                miner.run();
+                return sink.size();
+            }
+        };
+
+        if (name.equals("r_mine")) return new Benchmark(name) {
+            public long run() {
+                return new NBMiner().R_mine(db, PI, THETA, param[1], 
+                        param[0], (int) param[2], maxlen, false, false, 
+                        false).getPrecision().length;
+            }
+        };
+
+        throw new IllegalArgumentException("unknown benchmark " + name);
+    }
+
+    // NBSelect for the nodes {item} of the most frequent items (the counts
+    // are prepared in advance)
+    private static class NBSelectBenchmark extends Benchmark {
+        private NBMiner miner = new NBMiner();
+        private ScratchBuffers scratch;
+        private Itemset[] nodes;
+        private Counts[] counts;
+
+        NBSelectBenchmark(SparseSetOfItemsets db, double[] param) {
+            super("nbselect");
+
+            miner.prepare(db, PI, THETA, param[1], param[0], 
+                    (int) param[2], 5, false, false, false, 
+                    new CSCResultSink(db.items(), false));
+            scratch = new ScratchBuffers(db.items(), db.size());
+
+            // most frequent items
+            int[] frequency = new int[db.items()];
+            for (int pos = 0; pos < db.incidences(); pos++) 
+                frequency[db.getI()[pos]]++;
+            Integer[] order = new Integer[db.items()];
+            for (int i = 0; i < order.length; i++) order[i] = new Integer(i);
+            final int[] f = frequency;
+            Arrays.sort(order, new java.util.Comparator<Integer>() {
+                public int compare(Integer o1, Integer o2) {
+                    return f[o2.intValue()] - f[o1.intValue()];
+                }
+            });
+
+            int n = Math.min(SELECT_ITEMS, db.items());
+            nodes = new Itemset[n];
+            counts = new Counts[n];
+            int[] cooccurrence = new int[db.items()];
+            for (int j = 0; j < n; j++) {
+                int item = order[j].intValue();
+                nodes[j] = new Itemset(item);
+                counts[j] = new Counts(db.items());
+                counts[j].clear(false);
+
+                Arrays.fill(cooccurrence, 0);
+                for (int t = 0; t < db.size(); t++) {
+                    if (Arrays.binarySearch(db.getI(), db.getP()[t], 
+                                db.getP()[t+1], item) < 0) continue;
+                    for (int pos = db.getP()[t]; pos < db.getP()[t+1]; pos++)
+                        if (db.getI()[pos] != item) 
+                            cooccurrence[db.getI()[pos]]++;
+                }
+                for (int i = 0; i < db.items(); i++) 
+                    counts[j].set(i, cooccurrence[i]);
+            }
+        }
+
+        public long run() {
+            long sum = 0;
+            for (int j = 0; j < nodes.length; j++) 
+                sum += miner.NBSelect(counts[j], nodes[j], scratch).size();
+            return sum;
+        }
+
+        public int operations() { return nodes.length; }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Synthetic transaction data similar to the Agrawal/IBM Quest generator
+ * (used for the Agrawal data set): transactions are built from randomly
+ * chosen (and corrupted) patterns plus some noise items.
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.util.Arrays;
+import java.util.Random;
+
+public class SyntheticData {
+
+    private int items;
+    private int transactions;
+    private double avgLength;       // average transaction length
+    private int patterns;
+    private double avgPatternLength;
+    private long seed;
+
+    public SyntheticData(int items, int transactions, double avgLength,
+            int patterns, double avgPatternLength, long seed) {
+        this.items = items;
+        this.transactions = transactions;
+        this.avgLength = avgLength;
+        this.patterns = patterns;
+        this.avgPatternLength = avgPatternLength;
+        this.seed = seed;
+    }
+
+    public SparseSetOfItemsets generate() {
+        Random random = new Random(seed);
+
+        // patterns with exponentially distributed weights
+        int[][] pattern = new int[patterns][];
+        double[] cumWeight = new double[patterns];
+        double sum = 0.0;
+        for (int l = 0; l < patterns; l++) {
+            pattern[l] = new int[1 + poisson(random, avgPatternLength - 1)];
+            for (int j = 0; j < pattern[l].length; j++) 
+                pattern[l][j] = random.nextInt(items);
+            sum += -Math.log(random.nextDouble());
+            cumWeight[l] = sum;
+        }
+
+        int[] i = new int[(int) (transactions * (avgLength + 1))];
+        int[] p = new int[transactions + 1];
+        boolean[] member = new boolean[items];
+        int[] transaction = new int[items];
+
+        for (int t = 0; t < transactions; t++) {
+            int length = Math.min(items, 1 + poisson(random, avgLength - 1));
+            int size = 0;
+
+            while (size < length) {
+                int l = Arrays.binarySearch(cumWeight, 
+                        random.nextDouble() * sum);
+                if (l < 0) l = -l - 1;
+                if (l >= patterns) l = patterns - 1;
+
+                // corrupt the pattern by dropping items
+                for (int j = 0; j < pattern[l].length; j++) 
+                    if (random.nextDouble() > 0.25) 
+                        size = add(pattern[l][j], transaction, size, member);
+
+                // noise
+                if (random.nextDouble() < 0.3) 
+                    size = add(random.nextInt(items), transaction, size, 
+                            member);
+            }
+
+            Arrays.sort(transaction, 0, size);
+            if (p[t] + size > i.length) {
+                int[] newI = new int[Math.max(i.length * 2, p[t] + size)];
+                System.arraycopy(i, 0, newI, 0, p[t]);
+                i = newI;
+            }
+            for (int j = 0; j < size; j++) {
+                i[p[t] + j] = transaction[j];
+                member[transaction[j]] = false;
+            }
+            p[t+1] = p[t] + size;
+        }
+
+        int[] trimmedI = new int[p[transactions]];
+        System.arraycopy(i, 0, trimmedI, 0, trimmedI.length);
+        return new SparseSetOfItemsets(trimmedI, p, items);
+    }
+
+    private static int add(int item, int[] transaction, int size, 
+            boolean[] member) {
+        if (member[item]) return size;
+        member[item] = true;
+        transaction[size] = item;
+        return size + 1;
+    }
+
+    private static int poisson(Random random, double mean) {
+        double limit = Math.exp(-mean);
+        double prod = 1.0;
+        int k = 0;
+        do {
+            k++;
+            prod *= random.nextDouble();
+        } while (prod > limit);
+        return k - 1;
+    }
+
+    // NB parameters {k, a (per incidence), n} estimated from the item
+    // frequencies like NBMinerParameters (EM with missing zeros, no
+    // trimming)
+    public static double[] parameters(SparseSetOfItemsets db) {
+        NBEstimator estimator = new NBEstimator(db, 1);
+        estimator.estimate(0, true);
+        return new double[] {estimator.getK(), estimator.getA(), 
+            estimator.getN()};
+    }
+}
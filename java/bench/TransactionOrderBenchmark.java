@@ -0,0 +1,55 @@
+/*
+ * Benchmark for reordering the transactions before mining (see
+ * TransactionOrder): the mean tid gap of the tid-lists (the locality of
+ * the DFS scans) and the mining time with and without reordering. Cache
+ * misses are not visible from Java; run the benchmark under a profiler
+ * (e.g., perf stat -e cache-misses) to count them.
+ *
+ * usage: java TransactionOrderBenchmark [items] [transactions]
+ *   [repetitions]
+ *
+ * This code is distributed under the GPL2
+ */
+
+public class TransactionOrderBenchmark {
+
+    public static void main(String[] arg) {
+        int items = arg.length > 0 ? Integer.parseInt(arg[0]) : 5000;
+        int transactions = arg.length > 1 ? Integer.parseInt(arg[1]) : 200000;
+        int repetitions = arg.length > 2 ? Integer.parseInt(arg[2]) : 3;
+
+        SparseSetOfItemsets db = new SyntheticData(items, transactions,
+                10, items, 4, 42).generate();
+        double[] param = SyntheticData.parameters(db);
+
+        System.out.println(db + ", " + db.incidences() + " incidences");
+
+        long start = System.nanoTime();
+        TransactionOrder order = new TransactionOrder(db,
+                NBEstimator.itemFrequencies(db, 1));
+        SparseSetOfItemsets reordered = order.reorder(db);
+        System.out.println("reordered in " +
+                (System.nanoTime() - start) / 1000000 + " ms, mean tid gap " +
+                Math.round(TransactionOrder.meanGap(db) * 10) / 10.0 +
+                " -> " +
+                Math.round(TransactionOrder.meanGap(reordered) * 10) / 10.0);
+
+        for (int r = 0; r < repetitions; r++) {
+            for (int o = 0; o < 2; o++) {
+                SparseSetOfItemsets data = o == 0 ? db : reordered;
+
+                System.gc();
+                start = System.nanoTime();
+                R_result result = new NBMiner().R_mine(data, 0.99, 0.5,
+                        param[1], param[0], (int) param[2], 5,
+                        false, false, false);
+                long time = System.nanoTime() - start;
+
+                System.out.println("run " + (r+1) +
+                        (o == 0 ? " original:  " : " reordered: ") +
+                        result.getPrecision().length + " itemsets in " +
+                        time / 1000000 + " ms");
+            }
+        }
+    }
+}
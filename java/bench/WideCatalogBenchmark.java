@@ -0,0 +1,40 @@
+/*
+ * Benchmark for wide item catalogs where the projected databases of the
+ * DFS nodes touch only a small fraction of the items.
+ *
+ * usage: java WideCatalogBenchmark [items] [transactions] [repetitions]
+ *
+ * This code is distributed under the GPL2
+ */
+
+import java.lang.management.ManagementFactory;
+
+public class WideCatalogBenchmark {
+
+    public static void main(String[] arg) {
+        int items = arg.length > 0 ? Integer.parseInt(arg[0]) : 50000;
+        int transactions = arg.length > 1 ? Integer.parseInt(arg[1]) : 50000;
+        int repetitions = arg.length > 2 ? Integer.parseInt(arg[2]) : 3;
+
+        SparseSetOfItemsets db = new SyntheticData(items, transactions, 
+                10, items / 10, 4, 42).generate();
+        double[] param = SyntheticData.parameters(db);
+
+        System.out.println(db + ", " + db.incidences() + " incidences");
+
+        for (int r = 0; r < repetitions; r++) {
+            System.gc();
+            long start = System.nanoTime();
+            R_result result = new NBMiner().R_mine(db, 0.99, 0.5, 
+                    param[1], param[0], (int) param[2], 5, 
+                    false, false, false);
+            long time = System.nanoTime() - start;
+
+            System.out.println("run " + (r+1) + ": " + 
+                    result.getPrecision().length + " itemsets in " + 
+                    time / 1000000 + " ms (heap used: " + 
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage()
+                    .getUsed() / (1024*1024) + " MB)");
+        }
+    }
+}